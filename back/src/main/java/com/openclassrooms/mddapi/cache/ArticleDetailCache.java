@@ -0,0 +1,141 @@
+package com.openclassrooms.mddapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.mddapi.dto.ArticleDTO;
+import com.openclassrooms.mddapi.dto.CommentDTO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * In-process cache of assembled article details, keyed by article ID.
+ * Bounded by the approximate size of the cached articles and their comments, with W-TinyLFU eviction
+ * and a time to live. Write paths invalidate entries explicitly; the time to live only bounds staleness
+ * for changes made outside of them.
+ * Hit, miss and eviction counters are published as {@code cache.*} metrics tagged {@code cache=articleDetails}.
+ *
+ * Cached DTOs are shared between requests and must not be modified. Each entry may also hold the article encoded
+ * as a response body, so that hot articles are served without being serialized again; the encoded bytes are
+ * dropped with the article and count in the weight of the entry.
+ */
+@Component
+public class ArticleDetailCache {
+
+    /**
+     * Name of the cache in published metrics.
+     */
+    public static final String NAME = "articleDetails";
+
+    // Approximate fixed cost, in bytes, of an article or comment DTO and its non-text fields
+    private static final int ENTRY_OVERHEAD = 200;
+
+    private final Cache<Long, Entry> cache;
+
+    /**
+     * Builds the cache and registers its metrics.
+     *
+     * @param meterRegistry Registry the cache metrics are published to
+     * @param maximumWeight Maximum approximate size of the cached articles, in bytes
+     * @param timeToLive Time after which a cached article is reloaded
+     */
+    public ArticleDetailCache(MeterRegistry meterRegistry,
+                              @Value("${mddapi.cache.article-detail.maximum-weight:67108864}") long maximumWeight,
+                              @Value("${mddapi.cache.article-detail.time-to-live:10m}") Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Long id, Entry entry) -> weigh(entry))
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    /**
+     * Returns the cached article, loading and caching it on a miss.
+     * Concurrent misses on the same article only load it once.
+     *
+     * @param id The ID of the article
+     * @param loader Function loading the article on a miss, its exceptions are propagated and nothing is cached
+     * @return The article as a DTO with its comments
+     */
+    public ArticleDTO get(Long id, Function<Long, ArticleDTO> loader) {
+        return cache.get(id, key -> new Entry(loader.apply(key), null)).article();
+    }
+
+    /**
+     * Returns the cached article encoded as a response body, loading and encoding it on a miss.
+     * An article cached without its encoding is encoded once, and its entry is replaced unless it was invalidated
+     * in the meantime.
+     *
+     * @param id The ID of the article
+     * @param loader Function loading the article on a miss, its exceptions are propagated and nothing is cached
+     * @param encoder Function encoding the article, its exceptions are propagated
+     * @return The encoded article
+     */
+    public EncodedResponse getEncoded(Long id, Function<Long, ArticleDTO> loader,
+                                      Function<ArticleDTO, EncodedResponse> encoder) {
+        Entry entry = cache.get(id, key -> {
+            ArticleDTO article = loader.apply(key);
+            return new Entry(article, encoder.apply(article));
+        });
+        if (entry.encoded() != null) {
+            return entry.encoded();
+        }
+
+        // Replacing the entry makes the cache weigh it again, with its encoded bytes
+        EncodedResponse encoded = encoder.apply(entry.article());
+        cache.asMap().replace(id, entry, new Entry(entry.article(), encoded));
+        return encoded;
+    }
+
+    /**
+     * Removes an article from the cache, to be called once a change to the article or its comments is saved.
+     *
+     * @param id The ID of the article
+     */
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Removes every article from the cache, for changes affecting many articles such as a renamed theme or user.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Estimates the memory used by an entry: its article DTO, counting two bytes per character of text,
+     * and its encoded bytes.
+     *
+     * @param entry The entry to weigh
+     * @return The approximate size of the entry, in bytes
+     */
+    private static int weigh(Entry entry) {
+        ArticleDTO article = entry.article();
+        long weight = (entry.encoded() != null ? entry.encoded().size() : 0) + ENTRY_OVERHEAD + 2L * (length(article.getTitle()) + length(article.getContent())
+                + length(article.getAuthorUsername()) + length(article.getThemeTitle()));
+        if (article.getComments() != null) {
+            for (CommentDTO comment : article.getComments()) {
+                weight += ENTRY_OVERHEAD + 2L * (length(comment.getContent()) + length(comment.getSenderUsername()));
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    /**
+     * A cached article, and its encoding once it has been served.
+     */
+    private record Entry(ArticleDTO article, EncodedResponse encoded) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.mddapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.openclassrooms.mddapi.repository.UserCredentials;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Short-lived in-process cache of credential lookups, keyed by the login (email or username) given by the client.
+ * Logins are compared case-insensitively by the database, so they are lower-cased to form keys: any casing of a login
+ * shares its entry and is invalidated with it.
+ * Absorbs retry storms and brute-force bursts on the same login: found credentials are kept for a few seconds,
+ * unknown logins for less, so a newly registered user can log in almost at once even if a write path forgets to invalidate.
+ * Hit and miss counters are published as {@code cache.*} metrics tagged {@code cache=credentials}.
+ */
+@Component
+public class CredentialCache {
+
+    /**
+     * Name of the cache in published metrics.
+     */
+    public static final String NAME = "credentials";
+
+    private final Cache<String, Optional<UserCredentials>> cache;
+
+    /**
+     * Builds the cache and registers its metrics.
+     *
+     * @param meterRegistry Registry the cache metrics are published to
+     * @param maximumSize Maximum number of cached logins
+     * @param positiveTimeToLive Time a found login is cached
+     * @param negativeTimeToLive Time an unknown login is cached
+     */
+    public CredentialCache(MeterRegistry meterRegistry,
+                           @Value("${mddapi.cache.credentials.maximum-size:10000}") long maximumSize,
+                           @Value("${mddapi.cache.credentials.positive-time-to-live:30s}") Duration positiveTimeToLive,
+                           @Value("${mddapi.cache.credentials.negative-time-to-live:5s}") Duration negativeTimeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Optional<UserCredentials>>() {
+                    @Override
+                    public long expireAfterCreate(String login, Optional<UserCredentials> credentials, long currentTime) {
+                        return (credentials.isPresent() ? positiveTimeToLive : negativeTimeToLive).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String login, Optional<UserCredentials> credentials,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(login, credentials, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String login, Optional<UserCredentials> credentials,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    /**
+     * Returns the cached credentials of a login, looking them up and caching the result on a miss.
+     * Concurrent misses on the same login only look it up once.
+     *
+     * @param login The email or username given by the client
+     * @param loader Function looking the credentials up on a miss, its exceptions are propagated and nothing is cached
+     * @return The credentials, or empty if no user has this login
+     */
+    public Optional<UserCredentials> get(String login, Function<String, Optional<UserCredentials>> loader) {
+        return cache.get(key(login), normalized -> loader.apply(login));
+    }
+
+    /**
+     * Removes logins from the cache, to be called once a user is registered, modified or deleted,
+     * with both their previous and their new email and username.
+     *
+     * @param logins The emails and usernames to remove
+     */
+    public void invalidate(String... logins) {
+        for (String login : logins) {
+            if (login != null) {
+                cache.invalidate(key(login));
+            }
+        }
+    }
+
+    private static String key(String login) {
+        return login.toLowerCase(Locale.ROOT);
+    }
+}
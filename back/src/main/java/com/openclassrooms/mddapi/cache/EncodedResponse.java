@@ -0,0 +1,18 @@
+package com.openclassrooms.mddapi.cache;
+
+/**
+ * Response body encoded once and served as is to every request for the same version.
+ *
+ * @param version The version of the encoded data, from which the ETag is derived
+ * @param json The body as UTF-8 JSON
+ * @param gzip The JSON compressed with gzip, or null when the body is too small to be worth compressing
+ */
+public record EncodedResponse(String version, byte[] json, byte[] gzip) {
+
+    /**
+     * @return The memory used by the encoded bodies, in bytes
+     */
+    public int size() {
+        return json.length + (gzip == null ? 0 : gzip.length);
+    }
+}
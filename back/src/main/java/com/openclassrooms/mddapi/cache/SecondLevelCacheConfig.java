@@ -0,0 +1,105 @@
+package com.openclassrooms.mddapi.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache, backed by in-process Caffeine caches through JCache.
+ *
+ * Cached entities are loaded by id from memory instead of MySQL: {@code Theme} (read-mostly, region {@link #THEMES})
+ * and {@code User} (read-write, region {@link #USERS}); Hibernate evicts an entity on its own updates and deletes.
+ * Queries hinted as cacheable are cached in the query results region, and dropped as soon as one of their tables
+ * is written by Hibernate. Writes made outside Hibernate are only picked up once entries expire.
+ *
+ * Every region is bounded and publishes {@code cache.*} metrics tagged with its name.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    /**
+     * Region of cached themes.
+     */
+    public static final String THEMES = "themes";
+
+    /**
+     * Region of cached users.
+     */
+    public static final String USERS = "users";
+
+    private static final String QUERY_RESULTS = "default-query-results-region";
+
+    private static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    /**
+     * Creates the JCache manager holding every region of the second-level cache.
+     * The manager is private to the application context: the provider's default one is shared by the whole JVM,
+     * so a second context, such as another test configuration, would find its regions already created.
+     *
+     * @param maximumSize Maximum number of entries of each entity and query region
+     * @param timeToLive Time after which entity and query entries are reloaded
+     * @param meterRegistry Registry the region metrics are published to
+     * @return The cache manager, closed with the application context
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(
+            @Value("${mddapi.cache.second-level.maximum-size:10000}") long maximumSize,
+            @Value("${mddapi.cache.second-level.time-to-live:10m}") Duration timeToLive,
+            MeterRegistry meterRegistry) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("mddapi:second-level-cache:" + UUID.randomUUID()), provider.getDefaultClassLoader());
+        for (String region : new String[] {THEMES, USERS, QUERY_RESULTS}) {
+            monitor(meterRegistry, cacheManager.createCache(region, regionConfiguration(maximumSize, timeToLive)));
+        }
+        // Update timestamps hold one entry per table and must outlive every cached query: never evicted
+        monitor(meterRegistry, cacheManager.createCache(UPDATE_TIMESTAMPS, regionConfiguration()));
+        return cacheManager;
+    }
+
+    /**
+     * Hands the cache manager to Hibernate, which fails on regions missing from it rather than creating unbounded ones.
+     *
+     * @param secondLevelCacheManager The cache manager holding every region
+     * @return The customizer of Hibernate properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> regionConfiguration() {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+
+    private static CaffeineConfiguration<Object, Object> regionConfiguration(long maximumSize, Duration timeToLive) {
+        CaffeineConfiguration<Object, Object> configuration = regionConfiguration();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()));
+        return configuration;
+    }
+
+    private static void monitor(MeterRegistry meterRegistry, Cache<Object, Object> cache) {
+        JCacheMetrics.monitor(meterRegistry, cache);
+    }
+}
@@ -0,0 +1,247 @@
+package com.openclassrooms.mddapi.cache;
+
+import com.openclassrooms.mddapi.repository.SubscriptionRepository;
+import com.openclassrooms.mddapi.repository.SubscriptionRepository.SubscriptionPair;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of subscriptions, in both directions: the themes of each user and the subscribers of each theme.
+ * IDs are stored in compressed bitmaps, so membership tests, subscriber counts and fan-out never reach the database.
+ *
+ * The index is loaded from the database once every singleton is created, before the web server accepts requests,
+ * then kept in sync by the subscription write paths, which must call {@link #add}, {@link #remove},
+ * {@link #removeTheme} or {@link #removeUser} once their change is saved.
+ * It reflects the writes of this instance only; {@link #reload()} rebuilds it from the database.
+ */
+@Component
+public class SubscriptionIndex implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionIndex.class);
+
+    private final SubscriptionRepository subscriptionRepository;
+
+    // Bitmaps are not thread-safe: reads share the read lock, writes and reloads take the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, Roaring64Bitmap> themesByUser = new HashMap<>();
+    private Map<Long, Roaring64Bitmap> usersByTheme = new HashMap<>();
+    private long size;
+
+    /**
+     * Constructor injection for required dependencies.
+     *
+     * @param subscriptionRepository Repository the index is loaded from
+     * @param meterRegistry Registry the number of indexed subscriptions is published to
+     */
+    public SubscriptionIndex(SubscriptionRepository subscriptionRepository, MeterRegistry meterRegistry) {
+        this.subscriptionRepository = subscriptionRepository;
+        Gauge.builder("subscription.index.size", this, SubscriptionIndex::size)
+                .description("Number of subscriptions held by the in-memory subscription index")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from every subscription in the database.
+     * The index is built aside, so readers keep seeing the previous version until it is swapped in.
+     */
+    public void reload() {
+        Map<Long, Roaring64Bitmap> themes = new HashMap<>();
+        Map<Long, Roaring64Bitmap> users = new HashMap<>();
+        long count = 0;
+        for (SubscriptionPair pair : subscriptionRepository.findAllPairs()) {
+            themes.computeIfAbsent(pair.getUserId(), id -> new Roaring64Bitmap()).addLong(pair.getThemeId());
+            users.computeIfAbsent(pair.getThemeId(), id -> new Roaring64Bitmap()).addLong(pair.getUserId());
+            count++;
+        }
+        themes.values().forEach(Roaring64Bitmap::runOptimize);
+        users.values().forEach(Roaring64Bitmap::runOptimize);
+
+        long loaded = count;
+        write(() -> {
+            themesByUser = themes;
+            usersByTheme = users;
+            size = loaded;
+            return null;
+        });
+        logger.info("Subscription index loaded with {} subscriptions", loaded);
+    }
+
+    /**
+     * Checks whether a user is subscribed to a theme.
+     *
+     * @param userId The ID of the user
+     * @param themeId The ID of the theme
+     * @return true if the user is subscribed to the theme
+     */
+    public boolean isSubscribed(Long userId, Long themeId) {
+        return read(() -> {
+            Roaring64Bitmap themes = themesByUser.get(userId);
+            return themes != null && themes.contains(themeId);
+        });
+    }
+
+    /**
+     * Retrieves the IDs of the themes subscribed by a user.
+     *
+     * @param userId The ID of the user
+     * @return The theme IDs in ascending order, as a copy
+     */
+    public long[] getThemeIds(Long userId) {
+        return read(() -> toArray(themesByUser.get(userId)));
+    }
+
+    /**
+     * Retrieves the IDs of the subscribers of a theme.
+     *
+     * @param themeId The ID of the theme
+     * @return The user IDs in ascending order, as a copy
+     */
+    public long[] getSubscriberIds(Long themeId) {
+        return read(() -> toArray(usersByTheme.get(themeId)));
+    }
+
+    /**
+     * Counts the subscribers of a theme.
+     *
+     * @param themeId The ID of the theme
+     * @return The number of users subscribed to the theme
+     */
+    public long countSubscribers(Long themeId) {
+        return read(() -> {
+            Roaring64Bitmap users = usersByTheme.get(themeId);
+            return users == null ? 0L : users.getLongCardinality();
+        });
+    }
+
+    /**
+     * Records a saved subscription.
+     *
+     * @param userId The ID of the subscribed user
+     * @param themeId The ID of the theme
+     */
+    public void add(Long userId, Long themeId) {
+        write(() -> {
+            Roaring64Bitmap themes = themesByUser.computeIfAbsent(userId, id -> new Roaring64Bitmap());
+            if (!themes.contains(themeId)) {
+                themes.addLong(themeId);
+                usersByTheme.computeIfAbsent(themeId, id -> new Roaring64Bitmap()).addLong(userId);
+                size++;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Records a deleted subscription.
+     *
+     * @param userId The ID of the unsubscribed user
+     * @param themeId The ID of the theme
+     */
+    public void remove(Long userId, Long themeId) {
+        write(() -> {
+            Roaring64Bitmap themes = themesByUser.get(userId);
+            if (themes != null && themes.contains(themeId)) {
+                themes.removeLong(themeId);
+                removeFrom(usersByTheme, themeId, userId);
+                if (themes.isEmpty()) {
+                    themesByUser.remove(userId);
+                }
+                size--;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Records a deleted theme, dropping all of its subscriptions.
+     *
+     * @param themeId The ID of the deleted theme
+     */
+    public void removeTheme(Long themeId) {
+        write(() -> {
+            Roaring64Bitmap users = usersByTheme.remove(themeId);
+            if (users != null) {
+                users.forEach(userId -> removeFrom(themesByUser, userId, themeId));
+                size -= users.getLongCardinality();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Records a deleted user, dropping all of their subscriptions.
+     *
+     * @param userId The ID of the deleted user
+     */
+    public void removeUser(Long userId) {
+        write(() -> {
+            Roaring64Bitmap themes = themesByUser.remove(userId);
+            if (themes != null) {
+                themes.forEach(themeId -> removeFrom(usersByTheme, themeId, userId));
+                size -= themes.getLongCardinality();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Counts the subscriptions held by the index.
+     *
+     * @return The number of indexed subscriptions
+     */
+    public long size() {
+        return read(() -> size);
+    }
+
+    private static void removeFrom(Map<Long, Roaring64Bitmap> index, long key, long value) {
+        Roaring64Bitmap values = index.get(key);
+        if (values != null) {
+            values.removeLong(value);
+            if (values.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static long[] toArray(Roaring64Bitmap bitmap) {
+        return bitmap == null ? new long[0] : bitmap.toArray();
+    }
+
+    private <T> T read(Supplier<T> action) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return action.get();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
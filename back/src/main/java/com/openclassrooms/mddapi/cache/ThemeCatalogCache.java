@@ -0,0 +1,69 @@
+package com.openclassrooms.mddapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.mddapi.model.Theme;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of the theme catalog, shared by every user.
+ * The catalog is small and read on every theme page, so it is cached as a whole under a single entry.
+ * Theme write paths invalidate it explicitly; the time to live only bounds staleness for changes made outside of them.
+ * Hit and miss counters are published as {@code cache.*} metrics tagged {@code cache=themeCatalog}.
+ *
+ * Cached themes are detached, shared between requests and must not be modified.
+ */
+@Component
+public class ThemeCatalogCache {
+
+    /**
+     * Name of the cache in published metrics.
+     */
+    public static final String NAME = "themeCatalog";
+
+    private static final String CATALOG_KEY = "all";
+
+    private final Cache<String, List<Theme>> cache;
+
+    /**
+     * Builds the cache and registers its metrics.
+     *
+     * @param meterRegistry Registry the cache metrics are published to
+     * @param timeToLive Time after which the catalog is reloaded
+     */
+    public ThemeCatalogCache(MeterRegistry meterRegistry,
+                             @Value("${mddapi.cache.theme-catalog.time-to-live:10m}") Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    /**
+     * Returns the cached catalog, loading and caching it on a miss.
+     * Concurrent misses only load it once.
+     *
+     * @param loader Supplier loading every theme on a miss, its exceptions are propagated and nothing is cached
+     * @return Every theme, as an unmodifiable list
+     */
+    public List<Theme> get(Supplier<List<Theme>> loader) {
+        return cache.get(CATALOG_KEY, key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * Removes the catalog from the cache, to be called once a theme is created, modified or deleted.
+     */
+    public void invalidate() {
+        cache.invalidate(CATALOG_KEY);
+    }
+}
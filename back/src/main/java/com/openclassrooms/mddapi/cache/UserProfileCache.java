@@ -0,0 +1,70 @@
+package com.openclassrooms.mddapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.mddapi.dto.UserDTO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * In-process cache of user profiles, keyed by user ID, for the requests that need more than the token claims.
+ * Profiles never hold the password. User write paths invalidate entries explicitly; the time to live only
+ * bounds staleness for changes made outside of them.
+ * Hit, miss and eviction counters are published as {@code cache.*} metrics tagged {@code cache=userProfiles}.
+ *
+ * Cached DTOs are shared between requests and must not be modified.
+ */
+@Component
+public class UserProfileCache {
+
+    /**
+     * Name of the cache in published metrics.
+     */
+    public static final String NAME = "userProfiles";
+
+    private final Cache<Long, UserDTO> cache;
+
+    /**
+     * Builds the cache and registers its metrics.
+     *
+     * @param meterRegistry Registry the cache metrics are published to
+     * @param maximumSize Maximum number of cached profiles
+     * @param timeToLive Time after which a cached profile is reloaded
+     */
+    public UserProfileCache(MeterRegistry meterRegistry,
+                            @Value("${mddapi.cache.user-profile.maximum-size:10000}") long maximumSize,
+                            @Value("${mddapi.cache.user-profile.time-to-live:10m}") Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    /**
+     * Returns the cached profile, loading and caching it on a miss.
+     *
+     * @param id The ID of the user
+     * @param loader Function loading the profile on a miss, its exceptions are propagated and nothing is cached
+     * @return The profile of the user, without password
+     */
+    public UserDTO get(Long id, Function<Long, UserDTO> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * Removes a profile from the cache, to be called once the user is modified or deleted.
+     *
+     * @param id The ID of the user
+     */
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+}
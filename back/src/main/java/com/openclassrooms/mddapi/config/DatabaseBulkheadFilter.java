@@ -0,0 +1,75 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulkhead bounding the number of requests handled at once, so that they never outnumber database connections by much.
+ * Without it, virtual threads let every incoming request start and queue inside the connection pool, where they hold
+ * memory and time out after the pool's connection timeout; here, requests beyond the limit wait at most
+ * {@code maxWait} for a permit and are otherwise rejected with 503 and a {@code Retry-After} header.
+ *
+ * The permit is released once the request's initial dispatch returns; streamed responses keep working
+ * afterwards without holding a permit.
+ * Publishes the {@code http.bulkhead.available} gauge and the {@code http.bulkhead.rejected} counter.
+ */
+public class DatabaseBulkheadFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final Duration maxWait;
+    private final Counter rejected;
+
+    /**
+     * @param maxConcurrentRequests Maximum number of requests handled at once
+     * @param maxWait Maximum time a request waits for a permit before being rejected
+     * @param meterRegistry Registry the bulkhead metrics are published to
+     */
+    public DatabaseBulkheadFilter(int maxConcurrentRequests, Duration maxWait, MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxWait = maxWait;
+        this.rejected = Counter.builder("http.bulkhead.rejected")
+                .description("Requests rejected because every bulkhead permit stayed taken")
+                .register(meterRegistry);
+        Gauge.builder("http.bulkhead.available", permits, Semaphore::availablePermits)
+                .description("Bulkhead permits currently available")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+/**
+ * Application metrics, on top of those Spring Boot publishes by itself
+ * ({@code http.server.requests}, {@code spring.data.repository.invocations}, {@code hikaricp.*},
+ * and {@code hibernate.*} statistics).
+ *
+ * Every method of the services annotated {@code @Timed("mddapi.service")} is timed, tagged by class and method,
+ * and every request records the number of SQL statements it ran.
+ * Metrics are scraped from {@code /actuator/prometheus} on the management port.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Times the methods of classes and methods annotated {@code @Timed}.
+     *
+     * @param meterRegistry the registry timers are published to
+     * @return the aspect recording the timers
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * Registers the statement counter first, so that it also counts statements run by security filters.
+     *
+     * @param meterRegistry the registry statement counts are published to
+     * @return the registration of the statement counting filter
+     */
+    @Bean
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<StatementCountFilter> registration =
+                new FilterRegistrationBean<>(new StatementCountFilter(meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * Wraps the {@code dataSource} bean, used by JPA and JDBC, in a datasource-proxy reporting its statements
+     * to the statement counter.
+     *
+     * @return the post-processor wrapping the data source
+     */
+    @Bean
+    public static BeanPostProcessor statementCountDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(StatementCountFilter.LISTENER)
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
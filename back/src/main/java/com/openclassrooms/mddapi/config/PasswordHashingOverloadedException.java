@@ -0,0 +1,28 @@
+package com.openclassrooms.mddapi.config;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+/**
+ * Thrown when too many passwords are already waiting to be hashed.
+ * Maps to 429 Too Many Requests; the authentication endpoints also send a {@code Retry-After} header.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * @param retryAfter Delay suggested to the client before it retries
+     */
+    public PasswordHashingOverloadedException(Duration retryAfter) {
+        super("Too many password hashing requests!");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,110 @@
+package com.openclassrooms.mddapi.config;
+
+import com.openclassrooms.mddapi.service.ArticleService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read/write splitting between the primary database and a read replica, enabled by setting
+ * {@code mddapi.datasource.replica.url}. Without it, the single {@code spring.datasource} pool is used as before.
+ *
+ * Service methods annotated {@code @Transactional(readOnly = true)} read from the replica, everything else uses
+ * the primary (see {@link ReadWriteRoutingDataSource}). Both pools take their settings from
+ * {@code spring.datasource.hikari.*} and {@code mddapi.datasource.replica.hikari.*}; any JDBC URL works,
+ * so two embedded databases are enough locally.
+ */
+@Configuration
+@ConditionalOnProperty(name = "mddapi.datasource.replica.url")
+public class ReadReplicaConfig {
+
+    /**
+     * Pool of connections to the primary database, configured by {@code spring.datasource.*}.
+     *
+     * @param properties The standard data source properties
+     * @return The primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Pool of connections to the replica, configured by {@code mddapi.datasource.replica.*}.
+     * Its connections are read-only, so that a misrouted write fails instead of diverging from the primary.
+     *
+     * @param url The JDBC URL of the replica
+     * @param username The user of the replica, the primary's by default
+     * @param password The password of the replica, the primary's by default
+     * @return The replica pool
+     */
+    @Bean
+    @ConfigurationProperties("mddapi.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            @Value("${mddapi.datasource.replica.url}") String url,
+            @Value("${mddapi.datasource.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${mddapi.datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * Measures the replication lag of the replica.
+     *
+     * @param replicaDataSource The replica pool
+     * @param lagQuery The query returning the lag in seconds
+     * @param maxLag The lag above which reads go back to the primary
+     * @param checkInterval Time between two checks
+     * @param meterRegistry Registry the replica gauges are published to
+     * @return The lag monitor, stopped with the application context
+     */
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            @Value("${mddapi.datasource.replica.lag-query:SHOW REPLICA STATUS}") String lagQuery,
+            @Value("${mddapi.datasource.replica.max-lag:2s}") Duration maxLag,
+            @Value("${mddapi.datasource.replica.check-interval:1s}") Duration checkInterval,
+            MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLag, checkInterval, meterRegistry);
+    }
+
+    /**
+     * Data source used by JPA and JDBC, routing each transaction to the primary or to the replica.
+     *
+     * @param primaryDataSource The primary pool
+     * @param replicaDataSource The replica pool
+     * @param replicaLagMonitor The monitor telling whether the replica may be used
+     * @return The routing data source, acquiring connections lazily
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor,
+                        ArticleService.class.getPackageName()));
+    }
+}
@@ -0,0 +1,51 @@
+package com.openclassrooms.mddapi.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Data source sending connections of read-only service transactions to the replica, and every other connection
+ * to the primary. Read-only transactions also go to the primary while the replica lags too far behind or is unreachable.
+ *
+ * Only transactions started by a class of the service package are routed: Spring Data runs every repository method
+ * called outside of a transaction in a read-only transaction of its own, and routing those would make read-then-write
+ * flows and cache loads read stale rows from the replica.
+ *
+ * The read-only flag of a transaction is only known once it has started, after JPA asked for its connection:
+ * this data source must be wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * which only asks for the actual connection on the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private enum Route { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final String servicePackage;
+
+    /**
+     * @param primary The data source of the primary database
+     * @param replica The data source of the replica
+     * @param lagMonitor The monitor telling whether the replica may be used
+     * @param servicePackage The package of the services whose read-only transactions are routed to the replica
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                                      String servicePackage) {
+        this.lagMonitor = lagMonitor;
+        this.servicePackage = servicePackage + ".";
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String transactionName = TransactionSynchronizationManager.getCurrentTransactionName();
+        boolean readOnlyService = TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && transactionName != null && transactionName.startsWith(servicePackage);
+        return readOnlyService && lagMonitor.isReplicaAvailable() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
@@ -0,0 +1,129 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically measures how far the replica lags behind the primary, and tells whether reads may still be sent to it.
+ *
+ * The lag query returns the lag in seconds: MySQL's {@code SHOW REPLICA STATUS} is read from its
+ * {@code Seconds_Behind_Source} column, any other query from its first column. The replica is unavailable
+ * while the lag exceeds {@code maxLag}, while replication is stopped (no lag reported), or while the query fails.
+ *
+ * Publishes the {@code datasource.replica.lag} (seconds, -1 if unknown) and {@code datasource.replica.available} gauges.
+ */
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private static final String MYSQL_LAG_COLUMN = "Seconds_Behind_Source";
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final long maxLagSeconds;
+    private final ScheduledExecutorService scheduler;
+    private volatile long lagSeconds = -1;
+    private volatile boolean available;
+
+    /**
+     * Builds the monitor and starts checking the replica.
+     *
+     * @param replica The replica data source
+     * @param lagQuery The query returning the replication lag in seconds
+     * @param maxLag The lag above which reads go back to the primary
+     * @param interval Time between two checks
+     * @param meterRegistry Registry the replica gauges are published to
+     */
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, Duration interval,
+                             MeterRegistry meterRegistry) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toSeconds();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Replication lag of the replica, in seconds (-1 if unknown)")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.available", this, monitor -> monitor.available ? 1 : 0)
+                .description("Whether read-only transactions are sent to the replica")
+                .register(meterRegistry);
+
+        scheduler.scheduleWithFixedDelay(this::check, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Whether the replica was reachable and close enough to the primary at the last check
+     */
+    public boolean isReplicaAvailable() {
+        return available;
+    }
+
+    /**
+     * Stops checking the replica, once the application context is closed.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void check() {
+        long lag;
+        try {
+            lag = queryLag();
+        } catch (SQLException | RuntimeException e) {
+            logger.debug("Replica lag check failed", e);
+            lag = -1;
+        }
+
+        boolean nowAvailable = lag >= 0 && lag <= maxLagSeconds;
+        if (nowAvailable != available) {
+            logger.warn(nowAvailable ? "Replica back in use, lag {}s" : "Replica out of use, lag {}s (-1 if unknown)", lag);
+        }
+        lagSeconds = lag;
+        available = nowAvailable;
+    }
+
+    /**
+     * Runs the lag query on the replica.
+     *
+     * @return The lag in seconds, or -1 if the replica reports none
+     */
+    private long queryLag() throws SQLException {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return -1;
+            }
+            long lag = resultSet.getLong(lagColumn(resultSet.getMetaData()));
+            return resultSet.wasNull() ? -1 : lag;
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            if (MYSQL_LAG_COLUMN.equalsIgnoreCase(metaData.getColumnLabel(column))) {
+                return column;
+            }
+        }
+        return 1;
+    }
+}
@@ -1,8 +1,11 @@
 package com.openclassrooms.mddapi.config;
 
+import java.time.Duration;
 import java.util.List;
 
 import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -17,18 +20,25 @@ import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
 import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 
 
+import com.openclassrooms.mddapi.controller.CommentStreamHandler;
 import com.openclassrooms.mddapi.service.CustomUserDetailsService;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import com.nimbusds.jose.jwk.source.ImmutableSecret;
 
@@ -38,6 +48,19 @@ import com.nimbusds.jose.jwk.source.ImmutableSecret;
  */
 @Configuration
 public class SecurityConfig {
+    /**
+     * Origins of the frontend, allowed by CORS and by the WebSocket handshakes.
+     */
+    static final List<String> ALLOWED_ORIGINS = List.of("http://localhost:4200");
+
+    /**
+     * Live endpoints, opened by browsers' EventSource or WebSocket, which cannot send an Authorization header:
+     * the article stream and the live comments of an article.
+     */
+    private static final RequestMatcher QUERY_TOKEN_PATHS = new OrRequestMatcher(
+            new AntPathRequestMatcher("/api/articles/subscribed/stream"),
+            new AntPathRequestMatcher(CommentStreamHandler.PATH));
+
     private final CustomUserDetailsService customUserDetailsService;
     private final String jwtKey;
 
@@ -48,7 +71,8 @@ public class SecurityConfig {
      */
     public SecurityConfig(CustomUserDetailsService customUserDetailsService) {
         this.customUserDetailsService = customUserDetailsService;
-        Dotenv dotenv = Dotenv.load();
+        // The .env file is optional, the key may also be set as an environment variable
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
         this.jwtKey = dotenv.get("JWT_SECRET_KEY");
 
         // Ensure the key is present
@@ -62,9 +86,9 @@ public class SecurityConfig {
      *
      * - Disables CSRF (since this is a stateless application using JWTs).
      * - Configures session management as stateless.
-     * - Allows public access to registration and login endpoints.
+     * - Allows public access to registration and login endpoints, and to the health and Prometheus endpoints.
      * - Protects all other endpoints with authentication.
-     * - Enables JWT-based OAuth2 resource server.
+     * - Enables JWT-based OAuth2 resource server, reading the token from the access_token query parameter on the live endpoints.
      *
      * @param http the HttpSecurity object
      * @return the configured SecurityFilterChain
@@ -79,18 +103,38 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/auth/register", "/auth/login").permitAll()
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll()
                 .anyRequest().authenticated()
             )
-            .oauth2ResourceServer(oauth2 -> oauth2.jwt(Customizer.withDefaults()))
+            .oauth2ResourceServer(oauth2 -> oauth2
+                .bearerTokenResolver(bearerTokenResolver())
+                .jwt(Customizer.withDefaults()))
             .build();
     }
     
+    /**
+     * Resolves the bearer token from the Authorization header, or on the live endpoints only,
+     * from the access_token query parameter, so that tokens stay out of the URLs of other requests.
+     *
+     * @return the bearer token resolver
+     */
+    private BearerTokenResolver bearerTokenResolver() {
+        DefaultBearerTokenResolver headerResolver = new DefaultBearerTokenResolver();
+        DefaultBearerTokenResolver streamResolver = new DefaultBearerTokenResolver();
+        streamResolver.setAllowUriQueryParameter(true);
+        return request -> QUERY_TOKEN_PATHS.matches(request)
+                ? streamResolver.resolve(request)
+                : headerResolver.resolve(request);
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
-        configuration.setAllowedOrigins(List.of("http://localhost:4200"));
+        configuration.setAllowedOrigins(ALLOWED_ORIGINS);
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
+        // Let the frontend read the comment count of paginated comments
+        configuration.setExposedHeaders(List.of("X-Total-Count"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -116,13 +160,22 @@ public class SecurityConfig {
     }
 
     /**
-     * Configures the password encoder to use BCrypt hashing.
+     * Configures the password encoder to use BCrypt hashing, on a dedicated bounded pool of threads
+     * so that a burst of logins or registrations cannot take every request thread.
      * 
-     * @return a BCryptPasswordEncoder instance
+     * @param threads the number of threads hashing passwords
+     * @param queueCapacity the number of hashes allowed to wait before requests are rejected
+     * @param retryAfter the delay suggested to rejected clients
+     * @param meterRegistry the registry hashing metrics are published to
+     * @return a BCrypt password encoder running on the bounded pool
      */
 	@Bean
-	public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+	public PasswordEncoder passwordEncoder(
+            @Value("${mddapi.security.password-hashing.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int threads,
+            @Value("${mddapi.security.password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${mddapi.security.password-hashing.retry-after:2s}") Duration retryAfter,
+            MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity, retryAfter, meterRegistry);
 	}
     
     /**
@@ -0,0 +1,76 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Counts the SQL statements executed while handling each request, and records them in the
+ * {@code http.server.requests.statements} summary tagged by method and URI pattern, next to Spring's
+ * {@code http.server.requests} timer. A rising count on an endpoint is the signature of an N+1 query.
+ *
+ * Statements are counted by {@link #LISTENER}, registered on a datasource-proxy wrapping the application data source,
+ * so that those of JPA and of {@code JdbcTemplate} are both counted; a JDBC batch counts as one statement.
+ * Only those run on the request thread are counted, so streamed responses are not.
+ */
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private static final ThreadLocal<int[]> STATEMENTS = new ThreadLocal<>();
+
+    /**
+     * Query listener counting the statements of the current request.
+     */
+    public static final QueryExecutionListener LISTENER = new QueryExecutionListener() {
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            int[] statements = STATEMENTS.get();
+            if (statements != null) {
+                statements[0]++;
+            }
+        }
+    };
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param meterRegistry Registry the statement counts are published to
+     */
+    public StatementCountFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        int[] statements = new int[1];
+        STATEMENTS.set(statements);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            STATEMENTS.remove();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("http.server.requests.statements")
+                    .description("SQL statements executed per request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", pattern != null ? pattern.toString() : "UNKNOWN")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(statements[0]);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Reports virtual threads pinned to their carrier thread, by streaming the {@code jdk.VirtualThreadPinned}
+ * JFR event. A virtual thread is pinned when it blocks inside a {@code synchronized} block or a native frame;
+ * pinned threads hold their carrier, so a few of them in a hot path are enough to cap throughput again.
+ *
+ * Each pinning longer than the threshold is logged with its top application frame and counted in the
+ * {@code jvm.threads.virtual.pinned} counter. The event only exists from Java 21; on older runtimes the
+ * stream starts and never reports anything.
+ */
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Duration threshold;
+    private final MeterRegistry meterRegistry;
+    private RecordingStream stream;
+
+    /**
+     * @param threshold Minimum pinning duration reported
+     * @param meterRegistry Registry pinnings are counted in
+     */
+    public VirtualThreadPinningMonitor(Duration threshold, MeterRegistry meterRegistry) {
+        this.threshold = threshold;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public synchronized void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+        logger.info("Reporting virtual threads pinned for more than {}", threshold);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return stream != null;
+    }
+
+    private void report(RecordedEvent event) {
+        String frame = topFrame(event);
+        meterRegistry.counter("jvm.threads.virtual.pinned", "frame", frame).increment();
+        logger.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), frame);
+    }
+
+    /**
+     * Finds the first frame of the application in the stack of an event, or the top frame if there is none.
+     */
+    private static String topFrame(RecordedEvent event) {
+        if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) {
+            return "unknown";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        RecordedFrame frame = frames.stream()
+                .filter(candidate -> candidate.getMethod().getType().getName().startsWith("com.openclassrooms."))
+                .findFirst()
+                .orElse(frames.get(0));
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+}
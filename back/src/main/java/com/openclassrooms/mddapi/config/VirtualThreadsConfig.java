@@ -0,0 +1,61 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Safeguards of the virtual-thread execution mode, enabled by the {@code virtual-threads} profile.
+ *
+ * The mode itself is Spring Boot's {@code spring.threads.virtual.enabled}: on Java 21 and later, Tomcat handles
+ * requests and the application task executor runs async work (such as streamed exports) on virtual threads.
+ * Since request concurrency is then no longer bounded by the Tomcat pool, a bulkhead bounds it instead,
+ * and pinned virtual threads are reported.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    /**
+     * Registers the bulkhead on API and authentication requests, after Spring Security
+     * so that rejected anonymous requests never take a permit.
+     *
+     * @param maxConcurrentRequests the maximum number of requests handled at once
+     * @param maxWait the maximum time a request waits for a permit
+     * @param meterRegistry the registry bulkhead metrics are published to
+     * @return the registration of the bulkhead filter
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mddapi.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<DatabaseBulkheadFilter> databaseBulkheadFilter(
+            @Value("${mddapi.bulkhead.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentRequests,
+            @Value("${mddapi.bulkhead.max-wait:2s}") Duration maxWait,
+            MeterRegistry meterRegistry) {
+        FilterRegistrationBean<DatabaseBulkheadFilter> registration =
+                new FilterRegistrationBean<>(new DatabaseBulkheadFilter(maxConcurrentRequests, maxWait, meterRegistry));
+        registration.addUrlPatterns("/api/*", "/auth/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    /**
+     * Reports virtual threads pinned to their carrier thread.
+     *
+     * @param threshold the minimum pinning duration reported
+     * @param meterRegistry the registry pinnings are counted in
+     * @return the pinning monitor, started with the application context
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mddapi.virtual-threads.pinning-monitor.enabled", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${mddapi.virtual-threads.pinning-monitor.threshold:20ms}") Duration threshold,
+            MeterRegistry meterRegistry) {
+        return new VirtualThreadPinningMonitor(threshold, meterRegistry);
+    }
+}
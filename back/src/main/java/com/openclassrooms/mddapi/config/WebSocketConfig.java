@@ -0,0 +1,31 @@
+package com.openclassrooms.mddapi.config;
+
+import com.openclassrooms.mddapi.controller.CommentStreamHandler;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Registers the WebSocket endpoints.
+ * Handshakes go through the security filter chain like any other request; since browsers cannot send headers
+ * on a WebSocket handshake, the token may be passed in the access_token query parameter (see {@link SecurityConfig}).
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final CommentStreamHandler commentStreamHandler;
+
+    public WebSocketConfig(CommentStreamHandler commentStreamHandler) {
+        this.commentStreamHandler = commentStreamHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Same origins as the CORS configuration
+        registry.addHandler(commentStreamHandler, CommentStreamHandler.PATH)
+                .setAllowedOrigins(SecurityConfig.ALLOWED_ORIGINS.toArray(String[]::new));
+    }
+}
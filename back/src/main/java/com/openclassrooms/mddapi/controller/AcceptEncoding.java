@@ -0,0 +1,59 @@
+package com.openclassrooms.mddapi.controller;
+
+/**
+ * Helpers for content negotiation on the {@code Accept-Encoding} request header.
+ * A coding is acceptable when it is listed with a non-zero quality, or when it is not listed and {@code *} is;
+ * {@code gzip;q=0} thus refuses gzip even though it contains its name.
+ */
+final class AcceptEncoding {
+
+    private static final String WILDCARD = "*";
+
+    private AcceptEncoding() {
+    }
+
+    /**
+     * Tells whether a client accepts a content coding.
+     *
+     * @param acceptEncoding The value of the Accept-Encoding header, or null if absent
+     * @param coding The content coding, such as gzip
+     * @return true if the coding has a non-zero quality
+     */
+    static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double listed = null;
+        Double wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parameters = entry.split(";");
+            String name = parameters[0].trim();
+            if (name.equalsIgnoreCase(coding)) {
+                listed = quality(parameters);
+            } else if (name.equals(WILDCARD)) {
+                wildcard = quality(parameters);
+            }
+        }
+
+        Double quality = listed != null ? listed : wildcard;
+        return quality != null && quality > 0;
+    }
+
+    /**
+     * Reads the quality of an Accept-Encoding entry, 1 by default and 0 if malformed.
+     */
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.length() > 2 && parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -1,10 +1,16 @@
 package com.openclassrooms.mddapi.controller;
 
+import com.openclassrooms.mddapi.cache.EncodedResponse;
 import com.openclassrooms.mddapi.dto.ArticleDTO;
+import com.openclassrooms.mddapi.dto.ArticleNotificationDTO;
+import com.openclassrooms.mddapi.dto.ArticleSummaryDTO;
 import com.openclassrooms.mddapi.dto.CreateArticleDTO;
-import com.openclassrooms.mddapi.model.Article;
-import com.openclassrooms.mddapi.repository.UserRepository;
+import com.openclassrooms.mddapi.dto.CursorPageDTO;
+import com.openclassrooms.mddapi.service.ArticleExportService;
 import com.openclassrooms.mddapi.service.ArticleService;
+import com.openclassrooms.mddapi.service.ArticleStreamHub;
+import com.openclassrooms.mddapi.service.CurrentUserService;
+import com.openclassrooms.mddapi.service.Versioned;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,10 +20,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -27,9 +37,15 @@ import java.util.List;
 public class ArticleController {
 
     private final ArticleService articleService;
+    private final ArticleExportService articleExportService;
+    private final ArticleStreamHub articleStreamHub;
+    private final CurrentUserService currentUserService;
 
-    public ArticleController(ArticleService articleService, UserRepository userRepository) {
+    public ArticleController(ArticleService articleService, ArticleExportService articleExportService, ArticleStreamHub articleStreamHub, CurrentUserService currentUserService) {
         this.articleService = articleService;
+        this.articleExportService = articleExportService;
+        this.articleStreamHub = articleStreamHub;
+        this.currentUserService = currentUserService;
     }
 
     /**
@@ -38,15 +54,14 @@ public class ArticleController {
     @Operation(summary = "Create a new article", description = "Creates a new article with the authenticated user as author")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Article created successfully", 
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Article.class))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArticleDTO.class))),
         @ApiResponse(responseCode = "401", description = "Unauthorized - User not authenticated"),
-        @ApiResponse(responseCode = "404", description = "User not found")
+        @ApiResponse(responseCode = "404", description = "User or theme not found")
     })
     @PostMapping
-    public ResponseEntity<Article> createArticle(@Valid @RequestBody CreateArticleDTO createArticleDTO) {
+    public ResponseEntity<ArticleDTO> createArticle(@Valid @RequestBody CreateArticleDTO createArticleDTO) {
         try {
-            String userEmail = SecurityContextHolder.getContext().getAuthentication().getName();
-            Article createdArticle = articleService.createArticleWithAuth(createArticleDTO, userEmail);
+            ArticleDTO createdArticle = articleService.createArticleWithAuth(createArticleDTO, currentUserService.getCurrentUser());
             return ResponseEntity.ok(createdArticle);
         } catch (RuntimeException e) {
             if (e.getMessage().equals("User not authenticated!")) {
@@ -59,15 +74,27 @@ public class ArticleController {
     /**
      * Retrieves all articles
      */
-    @Operation(summary = "Get all articles", description = "Retrieves a list of all articles")
+    @Operation(summary = "Get all articles", description = "Retrieves a list of all articles, as summaries without their comments")
     @ApiResponse(responseCode = "200", description = "Articles retrieved successfully", 
-                content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArticleDTO.class)))
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArticleSummaryDTO.class)))
     @GetMapping
-    public ResponseEntity<List<ArticleDTO>> getAllArticles() {
-        List<ArticleDTO> articles = articleService.getAllArticles();
+    public ResponseEntity<List<ArticleSummaryDTO>> getAllArticles() {
+        List<ArticleSummaryDTO> articles = articleService.getAllArticles();
         return ResponseEntity.ok(articles);
     }
     
+    /**
+     * Exports all articles as newline-delimited JSON
+     */
+    @Operation(summary = "Export all articles", description = "Streams every article, without its comments, as one JSON object per line")
+    @ApiResponse(responseCode = "200", description = "Articles streamed successfully",
+                content = @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = ArticleDTO.class)))
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportArticles() {
+        StreamingResponseBody body = articleExportService::exportArticles;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Retrieves an article by its ID
      */
@@ -75,11 +102,28 @@ public class ArticleController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Article found", 
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArticleDTO.class))),
+        @ApiResponse(responseCode = "304", description = "Article not modified since the version in If-None-Match"),
         @ApiResponse(responseCode = "404", description = "Article not found")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<ArticleDTO> getArticleById(@PathVariable Long id) { 
-        return ResponseEntity.ok(articleService.getArticleById(id));
+    public ResponseEntity<byte[]> getArticleById(@PathVariable Long id, WebRequest request,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // The article is served from its cached encoding, without being serialized again
+        EncodedResponse article = articleService.getEncodedArticleById(id);
+        String eTag = ETags.weak(article.version());
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(ETags.REVALIDATE).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(ETags.REVALIDATE)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (article.gzip() != null && AcceptEncoding.accepts(acceptEncoding, "gzip")) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(article.gzip());
+        }
+        return response.body(article.json());
     }
     
     /**
@@ -88,11 +132,11 @@ public class ArticleController {
     @Operation(summary = "Update an article", description = "Updates an existing article by its ID")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Article updated successfully", 
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Article.class))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArticleDTO.class))),
         @ApiResponse(responseCode = "404", description = "Article not found")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Article> updateArticle(@Valid @PathVariable Long id, @RequestBody ArticleDTO articleDTO) {
+    public ResponseEntity<ArticleDTO> updateArticle(@Valid @PathVariable Long id, @RequestBody ArticleDTO articleDTO) {
         return ResponseEntity.ok(articleService.updateArticle(id, articleDTO));
     }
 
@@ -112,16 +156,78 @@ public class ArticleController {
 
     /**
      * Retrieves all articles from themes subscribed by a user
+     *
+     * @deprecated unbounded, use {@link #getSubscribedFeed(Long, String, int)} instead
      */
-    @Operation(summary = "Get articles by subscribed themes", description = "Retrieves all articles from themes subscribed by a specific user")
+    @Deprecated
+    @Operation(summary = "Get articles by subscribed themes", description = "Retrieves all articles from themes subscribed by a specific user. Deprecated: use the paginated feed instead", deprecated = true)
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Articles retrieved successfully", 
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArticleDTO.class))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArticleSummaryDTO.class))),
+        @ApiResponse(responseCode = "304", description = "Articles not modified since the version in If-None-Match"),
         @ApiResponse(responseCode = "404", description = "User not found")
     })
     @GetMapping("/subscribed/{userId}")
-    public ResponseEntity<List<ArticleDTO>> getArticlesBySubscribedThemes(@PathVariable Long userId) {
-        List<ArticleDTO> articles = articleService.getArticlesBySubscribedThemes(userId);
-        return ResponseEntity.ok(articles);
+    public ResponseEntity<List<ArticleSummaryDTO>> getArticlesBySubscribedThemes(@PathVariable Long userId, WebRequest request) {
+        // The articles are only loaded when the client does not already have their version
+        Versioned<List<ArticleSummaryDTO>> articles = articleService.getArticlesBySubscribedThemes(userId,
+                version -> request.checkNotModified(ETags.weak(version)));
+        String eTag = ETags.weak(articles.version());
+        if (articles.isNotModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(ETags.REVALIDATE).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(ETags.REVALIDATE).body(articles.body());
+    }
+
+    /**
+     * Streams the articles created in the themes subscribed by the authenticated user
+     */
+    @Operation(summary = "Stream new subscribed articles", description = "Opens a Server-Sent Events stream sending an 'article' event for each article created in a theme subscribed by the authenticated user. "
+            + "Browsers' EventSource cannot send headers, so the token may be passed in the access_token query parameter instead")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream opened",
+                    content = @Content(mediaType = "text/event-stream", schema = @Schema(implementation = ArticleNotificationDTO.class))),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - User not authenticated"),
+        @ApiResponse(responseCode = "503", description = "Too many open streams, retry after the Retry-After delay")
+    })
+    @GetMapping(value = "/subscribed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSubscribedArticles() {
+        try {
+            return ResponseEntity.ok(articleStreamHub.open(currentUserService.getCurrentUser().id()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+    }
+
+    /**
+     * Retrieves one page of the articles from themes subscribed by a user, newest first
+     */
+    @Operation(summary = "Get the subscribed feed", description = "Retrieves one page of the articles from themes subscribed by a specific user, newest first. Pass the returned nextCursor to get the following page")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Feed page retrieved successfully",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPageDTO.class))),
+        @ApiResponse(responseCode = "304", description = "Feed page not modified since the version in If-None-Match"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor"),
+        @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    @GetMapping("/subscribed/{userId}/feed")
+    public ResponseEntity<CursorPageDTO<ArticleSummaryDTO>> getSubscribedFeed(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + ArticleService.DEFAULT_FEED_PAGE_SIZE) int size,
+            WebRequest request) {
+        // The page is only loaded when the client does not already have its version
+        Versioned<CursorPageDTO<ArticleSummaryDTO>> page;
+        try {
+            page = articleService.getSubscribedFeed(userId, cursor, size,
+                    version -> request.checkNotModified(ETags.weak(version)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        String eTag = ETags.weak(page.version());
+        if (page.isNotModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(ETags.REVALIDATE).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(ETags.REVALIDATE).body(page.body());
     }
 }
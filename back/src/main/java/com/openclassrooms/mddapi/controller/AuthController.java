@@ -1,10 +1,12 @@
 package com.openclassrooms.mddapi.controller;
 
+import com.openclassrooms.mddapi.config.PasswordHashingOverloadedException;
 import com.openclassrooms.mddapi.dto.AuthResponseDTO;
 import com.openclassrooms.mddapi.dto.LoginDTO;
 import com.openclassrooms.mddapi.dto.RegisterDTO;
 import com.openclassrooms.mddapi.dto.UserDTO;
 import com.openclassrooms.mddapi.service.AuthService;
+import com.openclassrooms.mddapi.service.CurrentUserService;
 import com.openclassrooms.mddapi.service.JwtService;
 import com.openclassrooms.mddapi.service.UserService;
 
@@ -16,9 +18,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -33,6 +36,7 @@ public class AuthController {
 
     private final UserService userService;
     private final AuthService authService;
+    private final CurrentUserService currentUserService;
 
     /**
      * Constructor injection for required dependencies.
@@ -41,10 +45,12 @@ public class AuthController {
      * @param userService             service for user management
      * @param authenticationManager   authentication manager for Spring Security
      * @param authService             service for authentication operations
+     * @param currentUserService      service resolving the authenticated user from their token
      */
-    public AuthController(JwtService jwtService, UserService userService, AuthenticationManager authenticationManager, AuthService authService) {
+    public AuthController(JwtService jwtService, UserService userService, AuthenticationManager authenticationManager, AuthService authService, CurrentUserService currentUserService) {
         this.userService = userService;
         this.authService = authService;
+        this.currentUserService = currentUserService;
     }
 
     /**
@@ -63,6 +69,10 @@ public class AuthController {
         @ApiResponse(
             responseCode = "400",
             description = "Invalid input data"
+        ),
+        @ApiResponse(
+            responseCode = "429",
+            description = "Too many password hashing requests, retry after the Retry-After delay"
         )
     })
     @PostMapping("/register")
@@ -70,6 +80,8 @@ public class AuthController {
         try {
             AuthResponseDTO authResponse = authService.register(registerDTO);
             return ResponseEntity.ok(authResponse);
+        } catch (PasswordHashingOverloadedException e) {
+            return tooManyRequests(e);
         } catch (RuntimeException e) {
             // Handle specific exceptions and return appropriate status codes
             return ResponseEntity.badRequest().build();
@@ -79,7 +91,6 @@ public class AuthController {
     /**
      * Endpoint to retrieve the current authenticated user.
      *
-     * @param authentication the current authentication object
      * @return a ResponseEntity containing the user's details
      */
     @Operation(summary = "Get current authenticated user", description = "Fetches details of the currently authenticated user")
@@ -95,12 +106,12 @@ public class AuthController {
         )
     })
     @GetMapping("/me")
-    public ResponseEntity<UserDTO> getCurrentUser(Authentication authentication) {
-        // Retrieve the user's email from the authentication object
-        String email = authentication.getName();
+    public ResponseEntity<UserDTO> getCurrentUser() {
+        // Retrieve the user's ID from the token claims
+        Long userId = currentUserService.getCurrentUser().id();
 
-        // Fetch the user's details using the email
-        UserDTO userResponse = userService.getUserByEmail(email);
+        // Fetch the user's details from the profile cache
+        UserDTO userResponse = userService.getUserProfile(userId);
 
         // Return the user's details as a response
         return ResponseEntity.ok(userResponse);
@@ -122,6 +133,10 @@ public class AuthController {
         @ApiResponse(
             responseCode = "401",
             description = "Invalid credentials"
+        ),
+        @ApiResponse(
+            responseCode = "429",
+            description = "Too many password hashing requests, retry after the Retry-After delay"
         )
     })
     @PostMapping("/login")
@@ -129,9 +144,23 @@ public class AuthController {
         try {
             AuthResponseDTO authResponse = authService.login(loginDTO);
             return ResponseEntity.ok(authResponse);
+        } catch (PasswordHashingOverloadedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             // Authentication failure
             return ResponseEntity.status(401).build();
         }
     }
+
+    /**
+     * Builds the response sent when password hashing is overloaded.
+     *
+     * @param e the overload exception
+     * @return a 429 response with a Retry-After header, in seconds
+     */
+    private ResponseEntity<AuthResponseDTO> tooManyRequests(PasswordHashingOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+            .build();
+    }
 }
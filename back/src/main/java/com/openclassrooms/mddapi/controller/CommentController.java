@@ -1,6 +1,7 @@
 package com.openclassrooms.mddapi.controller;
 
 import com.openclassrooms.mddapi.dto.CommentDTO;
+import com.openclassrooms.mddapi.dto.CursorPageDTO;
 import com.openclassrooms.mddapi.service.CommentService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,13 +15,16 @@ import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/comments")
 @Tag(name = "Comment", description = "Comment management API")
 public class CommentController {
 
+    /**
+     * Header holding the total number of items of a paginated list.
+     */
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     private final CommentService commentService;
 
     public CommentController(CommentService commentService) {
@@ -43,17 +47,28 @@ public class CommentController {
     }
 
     /**
-     * Retrieves all comments for an article
+     * Retrieves one page of the comments of an article
      */
-    @Operation(summary = "Get comments by article", description = "Retrieves all comments for a specific article")
+    @Operation(summary = "Get comments by article", description = "Retrieves one page of the comments of a specific article, oldest first. Pass the returned nextCursor to get the following page; the X-Total-Count header holds the number of comments of the article")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Comments retrieved successfully", 
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CommentDTO.class))),
+        @ApiResponse(responseCode = "200", description = "Comments page retrieved successfully",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPageDTO.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor"),
         @ApiResponse(responseCode = "404", description = "Article not found")
     })
     @GetMapping("/article/{articleId}")
-    public ResponseEntity<List<CommentDTO>> getCommentsByArticle(@PathVariable Long articleId) {
-        return ResponseEntity.ok(commentService.getCommentsByArticle(articleId));
+    public ResponseEntity<CursorPageDTO<CommentDTO>> getCommentsByArticle(
+            @PathVariable Long articleId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + CommentService.DEFAULT_PAGE_SIZE) int size) {
+        try {
+            CursorPageDTO<CommentDTO> page = commentService.getCommentsByArticle(articleId, cursor, size);
+            return ResponseEntity.ok()
+                    .header(TOTAL_COUNT_HEADER, String.valueOf(commentService.countCommentsByArticle(articleId)))
+                    .body(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
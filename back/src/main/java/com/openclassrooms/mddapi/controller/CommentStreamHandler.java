@@ -0,0 +1,55 @@
+package com.openclassrooms.mddapi.controller;
+
+import com.openclassrooms.mddapi.service.CommentStreamHub;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+
+/**
+ * WebSocket endpoint of the live comments of an article, at {@code /api/comments/article/{articleId}/live}.
+ * The optional {@code after} query parameter holds the ID of the last comment known by the reader, to catch up from.
+ * Each frame is a page of comments, oldest first; readers only receive, the messages they send are ignored.
+ */
+@Component
+public class CommentStreamHandler extends TextWebSocketHandler {
+
+    /**
+     * Path pattern of the endpoint, the article ID being the segment before {@code live}.
+     */
+    public static final String PATH = "/api/comments/article/*/live";
+
+    private final CommentStreamHub commentStreamHub;
+
+    public CommentStreamHandler(CommentStreamHub commentStreamHub) {
+        this.commentStreamHub = commentStreamHub;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Long articleId;
+        Long after;
+        try {
+            UriComponents uri = UriComponentsBuilder.fromUri(session.getUri()).build();
+            List<String> segments = uri.getPathSegments();
+            articleId = Long.valueOf(segments.get(segments.size() - 2));
+            MultiValueMap<String, String> parameters = uri.getQueryParams();
+            after = parameters.containsKey("after") ? Long.valueOf(parameters.getFirst("after")) : null;
+        } catch (NumberFormatException e) {
+            session.close(CloseStatus.BAD_DATA.withReason("Invalid article or comment ID!"));
+            return;
+        }
+        commentStreamHub.subscribe(articleId, after, session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        commentStreamHub.unsubscribe(session);
+    }
+}
@@ -0,0 +1,33 @@
+package com.openclassrooms.mddapi.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Helpers for conditional GET support.
+ * ETags are weak since they are derived from the version of the underlying rows rather than from the response bytes.
+ */
+final class ETags {
+
+    /**
+     * Cache policy of versioned responses: clients may keep them but must revalidate them on every use.
+     */
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private ETags() {
+    }
+
+    /**
+     * Builds a weak ETag from the parts identifying a version of a response.
+     *
+     * @param parts The version of the data and the request parameters the response depends on
+     * @return The quoted weak ETag
+     */
+    static String weak(Object... parts) {
+        String version = Arrays.deepToString(parts);
+        return "W/\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -1,5 +1,7 @@
 package com.openclassrooms.mddapi.controller;
 
+import com.openclassrooms.mddapi.dto.BatchSubscriptionDTO;
+import com.openclassrooms.mddapi.dto.SubscriptionResultDTO;
 import com.openclassrooms.mddapi.dto.ThemeWithSubscriptionDTO;
 import com.openclassrooms.mddapi.model.Subscription;
 import com.openclassrooms.mddapi.service.SubscriptionService;
@@ -10,6 +12,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -56,6 +59,36 @@ public class SubscriptionController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Subscribe to several themes at once
+     */
+    @Operation(summary = "Subscribe to several themes", description = "Subscribes a user to up to " + BatchSubscriptionDTO.MAX_THEMES + " themes in a single transaction and reports the outcome for each theme")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch applied, see the status of each theme",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = SubscriptionResultDTO.class))),
+        @ApiResponse(responseCode = "400", description = "Missing user ID, or empty or too large list of theme IDs"),
+        @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<List<SubscriptionResultDTO>> subscribeAll(@Valid @RequestBody BatchSubscriptionDTO batch) {
+        return ResponseEntity.ok(subscriptionService.subscribeAll(batch.getUserId(), batch.getThemeIds()));
+    }
+
+    /**
+     * Unsubscribe from several themes at once
+     */
+    @Operation(summary = "Unsubscribe from several themes", description = "Unsubscribes a user from up to " + BatchSubscriptionDTO.MAX_THEMES + " themes in a single transaction and reports the outcome for each theme")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch applied, see the status of each theme",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = SubscriptionResultDTO.class))),
+        @ApiResponse(responseCode = "400", description = "Missing user ID, or empty or too large list of theme IDs"),
+        @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    @DeleteMapping("/batch")
+    public ResponseEntity<List<SubscriptionResultDTO>> unsubscribeAll(@Valid @RequestBody BatchSubscriptionDTO batch) {
+        return ResponseEntity.ok(subscriptionService.unsubscribeAll(batch.getUserId(), batch.getThemeIds()));
+    }
+
     /**
      * Retrieve all themes followed by a user
      */
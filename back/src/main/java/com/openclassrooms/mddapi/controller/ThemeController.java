@@ -12,8 +12,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -48,9 +50,15 @@ public class ThemeController {
     @Operation(summary = "Get all themes", description = "Retrieves a list of all themes with subscription information")
     @ApiResponse(responseCode = "200", description = "Themes retrieved successfully", 
                 content = @Content(mediaType = "application/json", schema = @Schema(implementation = ThemeWithSubscriptionDTO.class)))
+    @ApiResponse(responseCode = "304", description = "Themes not modified since the version in If-None-Match")
     @GetMapping
-    public ResponseEntity<List<ThemeWithSubscriptionDTO>> getAllThemes() {
-        return ResponseEntity.ok(themeService.getAllThemesWithSubscription());
+    public ResponseEntity<List<ThemeWithSubscriptionDTO>> getAllThemes(WebRequest request) {
+        String eTag = ETags.weak(themeService.getThemesVersion());
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(ETags.REVALIDATE).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(ETags.REVALIDATE)
+                .body(themeService.getAllThemesWithSubscription());
     }
 
     /**
@@ -63,8 +63,43 @@ public class ArticleDTO {
     private String themeTitle;
 
     /**
-     * List of comments associated with the article.
-     * Contains all comments made on this article.
+     * First page of the comments of the article, oldest first.
+     * The following pages are retrieved from the comments endpoint with {@link #nextCommentsCursor}.
      */
     private List<CommentDTO> comments;
+
+    /**
+     * Opaque cursor of the second page of comments.
+     * Null when the article has no more comments than the first page.
+     */
+    private String nextCommentsCursor;
+
+    /**
+     * Total number of comments of the article.
+     */
+    private Long commentCount;
+
+    /**
+     * Timestamp of the latest comment of the article.
+     * Null when the article has no comment.
+     */
+    private LocalDateTime lastCommentAt;
+
+    /**
+     * Constructor for ArticleDTO without its comments.
+     * Used by JPQL constructor expressions, comments are attached afterwards.
+     *
+     * @param id The article's unique identifier
+     * @param title The title of the article
+     * @param content The content of the article
+     * @param createdAt The timestamp when the article was created
+     * @param updatedAt The timestamp when the article was last updated
+     * @param authorUsername The username of the article's author
+     * @param themeId The ID of the associated theme
+     * @param themeTitle The title of the associated theme
+     */
+    public ArticleDTO(Long id, String title, String content, LocalDateTime createdAt, LocalDateTime updatedAt,
+                      String authorUsername, Long themeId, String themeTitle) {
+        this(id, title, content, createdAt, updatedAt, authorUsername, themeId, themeTitle, null, null, null, null);
+    }
 }
@@ -0,0 +1,47 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO notifying subscribers of a new article on the live stream of their themes.
+ * Only holds what a list page displays in its header, the article itself is loaded from {@link ArticleDTO}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleNotificationDTO {
+    /**
+     * Unique identifier for the article.
+     * Also sent as the ID of the stream event.
+     */
+    private Long id;
+
+    /**
+     * Title of the article.
+     */
+    private String title;
+
+    /**
+     * Timestamp when the article was created.
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * Username of the author who created the article.
+     */
+    private String authorUsername;
+
+    /**
+     * ID of the theme associated with the article.
+     * Subscribers of this theme receive the notification.
+     */
+    private Long themeId;
+
+    /**
+     * Title of the theme associated with the article.
+     */
+    private String themeTitle;
+}
@@ -0,0 +1,85 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO representing an article in a list.
+ * Contains what list pages display: a truncated excerpt of the content and the number of comments,
+ * the full content and the comments being only available from {@link ArticleDTO}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleSummaryDTO {
+    /**
+     * Maximum number of characters of the content kept in the excerpt.
+     */
+    public static final int EXCERPT_LENGTH = 200;
+
+    /**
+     * Unique identifier for the article.
+     * Used to uniquely identify an article in the system.
+     */
+    private Long id;
+
+    /**
+     * Title of the article.
+     * Must be unique and descriptive of the article's content.
+     */
+    private String title;
+
+    /**
+     * Beginning of the article's content.
+     * Truncated to {@link #EXCERPT_LENGTH} characters.
+     */
+    private String excerpt;
+
+    /**
+     * Timestamp when the article was created.
+     * Automatically set when the article is created.
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * Username of the author who created the article.
+     * Used to identify the article's author.
+     */
+    private String authorUsername;
+
+    /**
+     * ID of the theme associated with the article.
+     * Used to categorize the article under a specific theme.
+     */
+    private Long themeId;
+
+    /**
+     * Title of the theme associated with the article.
+     * Used to display the theme information in the UI.
+     */
+    private String themeTitle;
+
+    /**
+     * Number of comments made on this article.
+     */
+    private long commentCount;
+
+    /**
+     * Constructor for ArticleSummaryDTO without its comment count.
+     * Used by JPQL constructor expressions, the comment count is attached afterwards.
+     *
+     * @param id The article's unique identifier
+     * @param title The title of the article
+     * @param excerpt The beginning of the article's content
+     * @param createdAt The timestamp when the article was created
+     * @param authorUsername The username of the article's author
+     * @param themeId The ID of the associated theme
+     * @param themeTitle The title of the associated theme
+     */
+    public ArticleSummaryDTO(Long id, String title, String excerpt, LocalDateTime createdAt,
+                             String authorUsername, Long themeId, String themeTitle) {
+        this(id, title, excerpt, createdAt, authorUsername, themeId, themeTitle, 0);
+    }
+}
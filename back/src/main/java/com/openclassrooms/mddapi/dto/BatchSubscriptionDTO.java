@@ -0,0 +1,26 @@
+package com.openclassrooms.mddapi.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO for subscribing a user to, or unsubscribing them from, several themes at once.
+ */
+@Data
+public class BatchSubscriptionDTO {
+    /**
+     * Maximum number of themes in a single batch.
+     */
+    public static final int MAX_THEMES = 100;
+
+    @NotNull(message = "User ID is required")
+    private Long userId;
+
+    @NotEmpty(message = "Theme IDs are required")
+    @Size(max = MAX_THEMES, message = "Too many theme IDs")
+    private List<@NotNull Long> themeIds;
+}
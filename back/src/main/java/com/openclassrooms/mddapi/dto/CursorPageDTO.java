@@ -0,0 +1,28 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO representing one page of a cursor-paginated list.
+ * Contains the items of the page and the opaque cursor needed to fetch the next one.
+ *
+ * @param <T> the type of the items in the page
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    /**
+     * Items of the current page, in the order defined by the endpoint.
+     */
+    private List<T> items;
+
+    /**
+     * Opaque cursor to pass back to retrieve the next page.
+     * Null when the current page is the last one.
+     */
+    private String nextCursor;
+}
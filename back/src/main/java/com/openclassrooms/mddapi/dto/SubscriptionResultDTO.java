@@ -0,0 +1,34 @@
+package com.openclassrooms.mddapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO representing the outcome of a batch subscription change for one theme.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionResultDTO {
+    /**
+     * ID of the theme the result applies to.
+     */
+    private Long themeId;
+
+    /**
+     * Outcome of the change for this theme.
+     */
+    private Status status;
+
+    /**
+     * Possible outcomes of a batch subscription change for one theme.
+     */
+    public enum Status {
+        SUBSCRIBED,
+        ALREADY_SUBSCRIBED,
+        UNSUBSCRIBED,
+        NOT_SUBSCRIBED,
+        THEME_NOT_FOUND
+    }
+}
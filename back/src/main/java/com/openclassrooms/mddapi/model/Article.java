@@ -12,7 +12,10 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "articles")
+@Table(name = "articles", indexes = {
+    // Supports the keyset-paginated subscribed feed ordered by (created_at, id)
+    @Index(name = "idx_articles_theme_created_at_id", columnList = "theme_id, created_at, id")
+})
 public class Article {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -29,6 +32,12 @@ public class Article {
     @JoinColumn(name = "author_id", nullable = false)
     private User author;
     
+    /**
+     * Body of the article, only read when accessed (the entity class is enhanced at build time),
+     * so that loading an article to check or update it does not transfer its body.
+     * Read paths select it explicitly in their DTO queries.
+     */
+    @Basic(fetch = FetchType.LAZY)
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
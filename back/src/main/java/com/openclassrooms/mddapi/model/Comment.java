@@ -11,10 +11,19 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+    // Supports the keyset-paginated comments of an article ordered by (created_at, id)
+    @Index(name = "idx_comments_article_created_at_id", columnList = "article_id, created_at, id")
+})
 public class Comment {
+    /**
+     * Ids are allocated by blocks of 50 from the id_generator table, so that Hibernate can batch comment inserts,
+     * which IDENTITY columns prevent. See db/comment-id-generator.sql.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "comment_id")
+    @TableGenerator(name = "comment_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "comments", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, columnDefinition = "TEXT")
@@ -2,10 +2,15 @@ package com.openclassrooms.mddapi.model;
 
 import java.time.LocalDateTime;
 
+import com.openclassrooms.mddapi.cache.SecondLevelCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = SecondLevelCacheConfig.THEMES)
 @Getter
 @Setter
 @NoArgsConstructor
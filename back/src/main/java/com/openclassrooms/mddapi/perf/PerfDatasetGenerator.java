@@ -0,0 +1,250 @@
+package com.openclassrooms.mddapi.perf;
+
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeds the embedded database of the {@code perf} profile with a synthetic dataset, sized by
+ * {@code mddapi.perf.dataset.*}: users, themes, subscriptions, articles spread over the last year, and comments.
+ * Rows are inserted with batched JDBC statements and explicit ids, so that the load driver can address them:
+ * user {@code i} is {@code perf<i>} with the password {@link #PASSWORD}, and articles are numbered from 1.
+ *
+ * Comments go preferably to recent articles, as they do in practice. Generation is skipped when the database
+ * already holds users, so that a file database is only seeded once.
+ */
+@Component
+@Profile("perf")
+public class PerfDatasetGenerator implements ApplicationRunner {
+
+    /**
+     * Password of every generated user.
+     */
+    public static final String PASSWORD = "Password1!";
+
+    private static final Logger logger = LoggerFactory.getLogger(PerfDatasetGenerator.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Block of comment ids reserved by the id generator, see {@code Comment#id}.
+     */
+    private static final int COMMENT_ID_BLOCK = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final SubscriptionIndex subscriptionIndex;
+    private final int users;
+    private final int themes;
+    private final int subscriptionsPerUser;
+    private final long articles;
+    private final long comments;
+    private final LocalDateTime now = LocalDateTime.now();
+
+    public PerfDatasetGenerator(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder,
+                                SubscriptionIndex subscriptionIndex,
+                                @Value("${mddapi.perf.dataset.users:10000}") int users,
+                                @Value("${mddapi.perf.dataset.themes:50}") int themes,
+                                @Value("${mddapi.perf.dataset.subscriptions-per-user:5}") int subscriptionsPerUser,
+                                @Value("${mddapi.perf.dataset.articles:100000}") long articles,
+                                @Value("${mddapi.perf.dataset.comments:1000000}") long comments) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.subscriptionIndex = subscriptionIndex;
+        this.users = users;
+        this.themes = themes;
+        this.subscriptionsPerUser = Math.min(subscriptionsPerUser, themes);
+        this.articles = articles;
+        this.comments = comments;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Long existingUsers = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        if (existingUsers != null && existingUsers > 0) {
+            logger.info("Dataset already present ({} users), generation skipped", existingUsers);
+            return;
+        }
+
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(42);
+        insertUsers();
+        insertThemes(random);
+        insertSubscriptions(random);
+        insertArticles(random);
+        insertComments(random);
+        restartIds();
+
+        // The index was built at startup, before the dataset existed
+        subscriptionIndex.reload();
+        logger.info("Dataset generated in {} s", (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private void insertUsers() {
+        // Every user shares one hash, so that generation does not spend minutes hashing
+        String hash = passwordEncoder.encode(PASSWORD);
+        LocalDate createdOn = now.minusYears(1).toLocalDate();
+        insert("users", "INSERT INTO users (id, username, email, password, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                users, (statement, id) -> {
+                    statement.setLong(1, id);
+                    statement.setString(2, "perf" + id);
+                    statement.setString(3, "perf" + id + "@example.com");
+                    statement.setString(4, hash);
+                    statement.setObject(5, createdOn);
+                    statement.setObject(6, createdOn);
+                });
+    }
+
+    private void insertThemes(SplittableRandom random) {
+        Timestamp createdAt = Timestamp.valueOf(now.minusYears(1));
+        insert("themes", "INSERT INTO themes (id, title, description, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                themes, (statement, id) -> {
+                    statement.setLong(1, id);
+                    statement.setString(2, "Theme " + id);
+                    statement.setString(3, text(random, 150));
+                    statement.setTimestamp(4, createdAt);
+                    statement.setTimestamp(5, createdAt);
+                });
+    }
+
+    /**
+     * Subscribes each user to distinct themes, chosen at random.
+     */
+    private void insertSubscriptions(SplittableRandom random) {
+        Timestamp createdAt = Timestamp.valueOf(now.minusMonths(6));
+        long[] themeIds = new long[themes];
+        for (int i = 0; i < themes; i++) {
+            themeIds[i] = i + 1;
+        }
+        insert("subscriptions", "INSERT INTO subscriptions (id, user_id, theme_id, created_at) VALUES (?, ?, ?, ?)",
+                (long) users * subscriptionsPerUser, (statement, id) -> {
+                    long userId = (id - 1) / subscriptionsPerUser + 1;
+                    int rank = (int) ((id - 1) % subscriptionsPerUser);
+                    if (rank == 0) {
+                        shuffle(themeIds, random);
+                    }
+                    statement.setLong(1, id);
+                    statement.setLong(2, userId);
+                    statement.setLong(3, themeIds[rank]);
+                    statement.setTimestamp(4, createdAt);
+                });
+    }
+
+    /**
+     * Inserts articles in chronological order over the last year.
+     */
+    private void insertArticles(SplittableRandom random) {
+        LocalDateTime first = now.minusYears(1);
+        long secondsPerArticle = Math.max(1, 365L * 24 * 3600 / Math.max(1, articles));
+        insert("articles", "INSERT INTO articles (id, title, theme_id, author_id, content, created_at, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                articles, (statement, id) -> {
+                    Timestamp createdAt = Timestamp.valueOf(first.plusSeconds(id * secondsPerArticle));
+                    statement.setLong(1, id);
+                    statement.setString(2, text(random, 40 + random.nextInt(40)));
+                    statement.setLong(3, 1 + random.nextInt(themes));
+                    statement.setLong(4, 1 + random.nextInt(users));
+                    statement.setString(5, text(random, 500 + random.nextInt(2500)));
+                    statement.setTimestamp(6, createdAt);
+                    statement.setTimestamp(7, createdAt);
+                });
+    }
+
+    /**
+     * Inserts comments, skewed towards recent articles: the article is drawn as {@code articles * (1 - u²)}.
+     */
+    private void insertComments(SplittableRandom random) {
+        if (articles == 0) {
+            return;
+        }
+        insert("comments", "INSERT INTO comments (id, content, sender_id, article_id, created_at, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                comments, (statement, id) -> {
+                    double u = random.nextDouble();
+                    long articleId = Math.min(articles, 1 + (long) (articles * (1 - u * u)));
+                    Timestamp createdAt = Timestamp.valueOf(now.minusMinutes(random.nextInt(60 * 24 * 30)));
+                    statement.setLong(1, id);
+                    statement.setString(2, text(random, 20 + random.nextInt(400)));
+                    statement.setLong(3, 1 + random.nextInt(users));
+                    statement.setLong(4, articleId);
+                    statement.setTimestamp(5, createdAt);
+                    statement.setTimestamp(6, createdAt);
+                });
+    }
+
+    /**
+     * Moves the id generators past the inserted ids, which were given explicitly.
+     */
+    private void restartIds() {
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (users + 1));
+        jdbcTemplate.execute("ALTER TABLE themes ALTER COLUMN id RESTART WITH " + (themes + 1));
+        jdbcTemplate.execute("ALTER TABLE subscriptions ALTER COLUMN id RESTART WITH "
+                + ((long) users * subscriptionsPerUser + 1));
+        jdbcTemplate.execute("ALTER TABLE articles ALTER COLUMN id RESTART WITH " + (articles + 1));
+        jdbcTemplate.update("UPDATE id_generator SET next_val = ? WHERE sequence_name = 'comments'",
+                comments + COMMENT_ID_BLOCK);
+    }
+
+    /**
+     * Inserts rows numbered from 1 to {@code count} in batches of {@link #BATCH_SIZE}.
+     */
+    private void insert(String table, String sql, long count, RowSetter setter) {
+        long start = System.nanoTime();
+        List<Long> ids = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= count; id++) {
+            ids.add(id);
+            if (ids.size() == BATCH_SIZE || id == count) {
+                jdbcTemplate.batchUpdate(sql, ids, ids.size(), setter::set);
+                ids.clear();
+            }
+        }
+        logger.info("Inserted {} {} in {} ms", count, table, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void shuffle(long[] values, SplittableRandom random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private static String text(SplittableRandom random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            int word = 2 + random.nextInt(9);
+            for (int i = 0; i < word && text.length() < length; i++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            if (text.length() < length) {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Sets the parameters of the row with the given id.
+     */
+    @FunctionalInterface
+    private interface RowSetter {
+        void set(PreparedStatement statement, long id) throws SQLException;
+    }
+}
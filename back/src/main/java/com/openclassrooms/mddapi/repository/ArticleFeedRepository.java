@@ -0,0 +1,105 @@
+package com.openclassrooms.mddapi.repository;
+
+import com.openclassrooms.mddapi.dto.ArticleSummaryDTO;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository reading pages of the articles of several themes, newest first, ordered by {@code (created_at, id)}.
+ *
+ * Ordering the articles of {@code theme_id IN (...)} makes MySQL sort every article of the themes before applying
+ * the limit. Instead, the newest {@code limit} positions of each theme are read separately, each as a backward range
+ * scan of {@code idx_articles_theme_created_at_id} that stops after {@code limit} entries and never reads the table,
+ * then merged, and only the rows of the page are joined to their author and theme.
+ * A page thus costs at most {@code limit} index entries per theme, however many articles the themes hold.
+ * Runs in the caller's transaction.
+ */
+@Repository
+public class ArticleFeedRepository {
+
+    private static final String SELECT_SUMMARY = "SELECT a.id, a.title, SUBSTRING(a.content, 1, "
+            + ArticleSummaryDTO.EXCERPT_LENGTH + ") AS excerpt, a.created_at, u.username, t.id AS theme_id, "
+            + "t.title AS theme_title FROM (";
+
+    private static final String JOIN_SUMMARY = ") feed JOIN articles a ON a.id = feed.id "
+            + "JOIN users u ON u.id = a.author_id JOIN themes t ON t.id = a.theme_id "
+            + "ORDER BY a.created_at DESC, a.id DESC";
+
+    private static final String SELECT_THEME_POSITIONS = "(SELECT id, created_at FROM articles WHERE theme_id = ? ";
+
+    private static final String BEFORE_POSITION = "AND (created_at < ? OR (created_at = ? AND id < ?)) ";
+
+    private static final String NEWEST_FIRST = "ORDER BY created_at DESC, id DESC LIMIT ?";
+
+    private static final RowMapper<ArticleSummaryDTO> SUMMARY_MAPPER = (resultSet, rowNum) -> new ArticleSummaryDTO(
+            resultSet.getLong("id"),
+            resultSet.getString("title"),
+            resultSet.getString("excerpt"),
+            resultSet.getTimestamp("created_at").toLocalDateTime(),
+            resultSet.getString("username"),
+            resultSet.getLong("theme_id"),
+            resultSet.getString("theme_title"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ArticleFeedRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * First page of the articles of some themes, newest first.
+     *
+     * @param themeIds The IDs of the themes, must not be empty
+     * @param limit The maximum number of articles
+     * @return The newest articles of the themes, without their comment count
+     */
+    public List<ArticleSummaryDTO> findFeed(Collection<Long> themeIds, int limit) {
+        return findFeed(themeIds, null, null, limit);
+    }
+
+    /**
+     * Next page of the articles of some themes, strictly after the given {@code (createdAt, id)} position.
+     *
+     * @param themeIds The IDs of the themes, must not be empty
+     * @param createdAt The creation time of the last article of the previous page
+     * @param id The ID of the last article of the previous page
+     * @param limit The maximum number of articles
+     * @return The articles of the themes following the position, without their comment count
+     */
+    public List<ArticleSummaryDTO> findFeedBefore(Collection<Long> themeIds, LocalDateTime createdAt, Long id, int limit) {
+        return findFeed(themeIds, Timestamp.valueOf(createdAt), id, limit);
+    }
+
+    private List<ArticleSummaryDTO> findFeed(Collection<Long> themeIds, Timestamp createdAt, Long id, int limit) {
+        // One branch per theme, each limited on its own, then the limit of the page over the merged branches
+        StringBuilder sql = new StringBuilder(SELECT_SUMMARY);
+        List<Object> parameters = new ArrayList<>();
+        for (Long themeId : themeIds) {
+            if (!parameters.isEmpty()) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append(SELECT_THEME_POSITIONS);
+            parameters.add(themeId);
+            if (createdAt != null) {
+                sql.append(BEFORE_POSITION);
+                parameters.add(createdAt);
+                parameters.add(createdAt);
+                parameters.add(id);
+            }
+            sql.append(NEWEST_FIRST).append(')');
+            parameters.add(limit);
+        }
+        sql.append(' ').append(NEWEST_FIRST).append(JOIN_SUMMARY);
+        parameters.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), SUMMARY_MAPPER, parameters.toArray());
+    }
+}
@@ -1,15 +1,93 @@
 package com.openclassrooms.mddapi.repository;
 
+import com.openclassrooms.mddapi.dto.ArticleDTO;
+import com.openclassrooms.mddapi.dto.ArticleSummaryDTO;
 import com.openclassrooms.mddapi.model.Article;
 import com.openclassrooms.mddapi.model.Theme;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ArticleRepository extends JpaRepository<Article, Long> {
+
+    /**
+     * Selects articles as {@link ArticleDTO} rows, joining their author and theme in the same query.
+     */
+    String SELECT_ARTICLE_DTO = "SELECT new com.openclassrooms.mddapi.dto.ArticleDTO("
+            + "a.id, a.title, a.content, a.createdAt, a.updatedAt, au.username, t.id, t.title) "
+            + "FROM Article a JOIN a.author au JOIN a.theme t ";
+
+    /**
+     * Selects articles as {@link ArticleSummaryDTO} rows, only reading the first
+     * {@link ArticleSummaryDTO#EXCERPT_LENGTH} characters of their content.
+     */
+    String SELECT_ARTICLE_SUMMARY = "SELECT new com.openclassrooms.mddapi.dto.ArticleSummaryDTO("
+            + "a.id, a.title, SUBSTRING(a.content, 1, " + ArticleSummaryDTO.EXCERPT_LENGTH + "), "
+            + "a.createdAt, au.username, t.id, t.title) "
+            + "FROM Article a JOIN a.author au JOIN a.theme t ";
+
+    /**
+     * Restricts articles to the themes of {@code :themeIds}, which must not be empty.
+     */
+    String WHERE_THEME_IN = "WHERE t.id IN :themeIds ";
+
+    /**
+     * Fetch size making MySQL Connector/J stream rows one at a time, rather than reading the whole result set,
+     * without turning on server-side cursors and prepared statements for every other query of the connection.
+     */
+    int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
     List<Article> findByThemeId(Long themeId);
-    List<Article> findByThemeIn(List<Theme> themes);    
+    List<Article> findByThemeIn(List<Theme> themes);
+
+    /**
+     * Streams every article as a DTO with its content, author and theme, reading rows from the database as they are
+     * consumed instead of loading the whole table.
+     * Must be consumed inside a transaction and closed afterwards; the connection runs no other query until then.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query(SELECT_ARTICLE_DTO)
+    Stream<ArticleDTO> streamAllDTOs();
+
+    @Query(SELECT_ARTICLE_DTO + "WHERE a.id = :id")
+    Optional<ArticleDTO> findDTOById(@Param("id") Long id);
+
+    @Query(SELECT_ARTICLE_SUMMARY)
+    List<ArticleSummaryDTO> findAllSummaries();
+
+    @Query(SELECT_ARTICLE_SUMMARY + WHERE_THEME_IN)
+    List<ArticleSummaryDTO> findSummariesByThemeIdIn(@Param("themeIds") Collection<Long> themeIds);
+
+    /**
+     * Version of the articles of some themes, in a single aggregated query that loads no article:
+     * the latest modification and number of the articles, the latest modification of the themes,
+     * and the creation of the latest comment of the articles. {@code :themeIds} must not be empty.
+     */
+    @Query("SELECT MAX(a.updatedAt) AS articlesLastModified, COUNT(a.id) AS articleCount, "
+            + "(SELECT MAX(t.updatedAt) FROM Theme t WHERE t.id IN :themeIds) AS themesLastModified, "
+            + "(SELECT MAX(c.createdAt) FROM Comment c WHERE c.article.theme.id IN :themeIds) AS lastCommentAt "
+            + "FROM Article a WHERE a.theme.id IN :themeIds")
+    FeedVersion findFeedVersionByThemeIdIn(@Param("themeIds") Collection<Long> themeIds);
+
+    /**
+     * Projection of the version of the articles of a feed.
+     */
+    interface FeedVersion {
+        LocalDateTime getArticlesLastModified();
+        Long getArticleCount();
+        LocalDateTime getThemesLastModified();
+        LocalDateTime getLastCommentAt();
+    }
 }
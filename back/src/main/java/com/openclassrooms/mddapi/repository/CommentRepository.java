@@ -1,13 +1,71 @@
 package com.openclassrooms.mddapi.repository;
 
+import com.openclassrooms.mddapi.dto.CommentDTO;
 import com.openclassrooms.mddapi.model.Comment;
 import com.openclassrooms.mddapi.model.Article;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByArticle(Article article);
+
+    String SELECT_COMMENT_DTO = "SELECT new com.openclassrooms.mddapi.dto.CommentDTO("
+            + "c.id, c.content, c.article.id, s.id, s.username, c.createdAt) "
+            + "FROM Comment c JOIN c.sender s ";
+
+    /**
+     * First page of the comments of an article, oldest first, with their sender joined.
+     */
+    @Query(SELECT_COMMENT_DTO + "WHERE c.article.id = :articleId ORDER BY c.createdAt, c.id")
+    List<CommentDTO> findPageByArticleId(@Param("articleId") Long articleId, Pageable pageable);
+
+    /**
+     * Next page of the comments of an article, strictly after the given {@code (createdAt, id)} position.
+     */
+    @Query(SELECT_COMMENT_DTO + "WHERE c.article.id = :articleId "
+            + "AND (c.createdAt > :createdAt OR (c.createdAt = :createdAt AND c.id > :id)) "
+            + "ORDER BY c.createdAt, c.id")
+    List<CommentDTO> findPageByArticleIdAfter(@Param("articleId") Long articleId,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+
+    /**
+     * Creation time of a comment of an article, which locates it in the {@code (createdAt, id)} order.
+     */
+    @Query("SELECT c.createdAt FROM Comment c WHERE c.id = :id AND c.article.id = :articleId")
+    Optional<LocalDateTime> findCreatedAtByIdAndArticleId(@Param("id") Long id, @Param("articleId") Long articleId);
+
+    /**
+     * Version of the comments of an article: the creation of the latest one, and their number.
+     */
+    @Query("SELECT MAX(c.createdAt) AS lastModified, COUNT(c) AS count FROM Comment c WHERE c.article.id = :articleId")
+    ContentVersion findVersionByArticleId(@Param("articleId") Long articleId);
+
+    long countByArticleId(Long articleId);
+
+    /**
+     * Counts the comments of several articles at once, in a single aggregated query.
+     * Articles without comments have no row.
+     */
+    @Query("SELECT c.article.id AS articleId, COUNT(c) AS commentCount FROM Comment c "
+            + "WHERE c.article.id IN :articleIds GROUP BY c.article.id")
+    List<ArticleCommentCount> countByArticleIdIn(@Param("articleIds") Collection<Long> articleIds);
+
+    /**
+     * Projection of the number of comments of an article.
+     */
+    interface ArticleCommentCount {
+        Long getArticleId();
+        Long getCommentCount();
+    }
 }
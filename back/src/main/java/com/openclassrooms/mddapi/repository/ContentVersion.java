@@ -0,0 +1,12 @@
+package com.openclassrooms.mddapi.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of the version of a set of rows: their latest modification timestamp and their number.
+ * Cheap to compute with an aggregate query, and changes whenever a row is added, modified or removed.
+ */
+public interface ContentVersion {
+    LocalDateTime getLastModified();
+    Long getCount();
+}
@@ -0,0 +1,64 @@
+package com.openclassrooms.mddapi.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Repository applying subscription changes for many themes with JDBC batches,
+ * so a whole batch costs one round trip instead of one per theme.
+ * Runs in the caller's transaction.
+ */
+@Repository
+public class SubscriptionBatchRepository {
+
+    private static final String INSERT_SUBSCRIPTION =
+            "INSERT INTO subscriptions (user_id, theme_id, created_at) VALUES (?, ?, ?)";
+
+    private static final String DELETE_SUBSCRIPTION =
+            "DELETE FROM subscriptions WHERE user_id = ? AND theme_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SubscriptionBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Subscribes a user to several themes in a single batch.
+     *
+     * @param userId The ID of the user
+     * @param themeIds The IDs of the themes, none of which the user is subscribed to
+     * @param createdAt The creation time of the subscriptions
+     */
+    public void insertAll(Long userId, List<Long> themeIds, LocalDateTime createdAt) {
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        jdbcTemplate.batchUpdate(INSERT_SUBSCRIPTION, themeIds.stream()
+                .map(themeId -> new Object[]{userId, themeId, timestamp})
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Unsubscribes a user from several themes in a single batch.
+     *
+     * @param userId The ID of the user
+     * @param themeIds The IDs of the themes
+     * @return For each theme, whether a subscription was deleted; assumed when the driver does not report row counts
+     */
+    public boolean[] deleteAll(Long userId, List<Long> themeIds) {
+        int[] counts = jdbcTemplate.batchUpdate(DELETE_SUBSCRIPTION, themeIds.stream()
+                .map(themeId -> new Object[]{userId, themeId})
+                .collect(Collectors.toList()));
+
+        boolean[] deleted = new boolean[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            deleted[i] = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return deleted;
+    }
+}
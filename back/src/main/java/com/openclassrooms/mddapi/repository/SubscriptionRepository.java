@@ -4,7 +4,11 @@ import com.openclassrooms.mddapi.model.Subscription;
 import com.openclassrooms.mddapi.model.User;
 import com.openclassrooms.mddapi.model.Theme;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,4 +17,31 @@ import java.util.Optional;
 public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
     List<Subscription> findByUser(User user);
     Optional<Subscription> findByUserAndTheme(User user, Theme theme);
+
+    /**
+     * Retrieves every subscription as a pair of IDs, without loading any entity.
+     */
+    @Query("SELECT s.user.id AS userId, s.theme.id AS themeId FROM Subscription s")
+    List<SubscriptionPair> findAllPairs();
+
+    /**
+     * Deletes the subscription of a user to a theme in a single statement.
+     *
+     * @return The number of deleted subscriptions
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Subscription s WHERE s.user.id = :userId AND s.theme.id = :themeId")
+    int deleteByUserIdAndThemeId(@Param("userId") Long userId, @Param("themeId") Long themeId);
+
+    @Query("SELECT MAX(s.createdAt) AS lastModified, COUNT(s) AS count FROM Subscription s WHERE s.user.id = :userId")
+    ContentVersion findVersionByUserId(@Param("userId") Long userId);
+
+    /**
+     * Projection of a subscription as the IDs of its user and theme.
+     */
+    interface SubscriptionPair {
+        Long getUserId();
+        Long getThemeId();
+    }
 }
@@ -0,0 +1,12 @@
+package com.openclassrooms.mddapi.repository;
+
+/**
+ * Credentials of a user, as needed to authenticate them: nothing more than their identifiers and password hash.
+ *
+ * @param id The ID of the user
+ * @param email The email of the user
+ * @param username The username of the user
+ * @param password The encoded password of the user
+ */
+public record UserCredentials(Long id, String email, String username, String password) {
+}
@@ -2,11 +2,23 @@ package com.openclassrooms.mddapi.repository;
 
 import com.openclassrooms.mddapi.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
+
+    /**
+     * Retrieves the credentials of the users whose email or username matches a login, in a single query.
+     * A match on the email comes first, so it wins when the login is the email of one user and the username of another.
+     */
+    @Query("SELECT new com.openclassrooms.mddapi.repository.UserCredentials(u.id, u.email, u.username, u.password) "
+            + "FROM User u WHERE u.email = :login OR u.username = :login "
+            + "ORDER BY CASE WHEN u.email = :login THEN 0 ELSE 1 END")
+    List<UserCredentials> findCredentialsByEmailOrUsername(@Param("login") String login);
 }
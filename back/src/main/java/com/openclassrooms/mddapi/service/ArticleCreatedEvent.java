@@ -0,0 +1,12 @@
+package com.openclassrooms.mddapi.service;
+
+import com.openclassrooms.mddapi.dto.ArticleNotificationDTO;
+
+/**
+ * Application event published by {@link ArticleService} when an article is created.
+ * Listeners bound to the transaction phase receive it once the article is committed.
+ *
+ * @param article The notification sent to the subscribers of the article's theme
+ */
+public record ArticleCreatedEvent(ArticleNotificationDTO article) {
+}
@@ -0,0 +1,73 @@
+package com.openclassrooms.mddapi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.openclassrooms.mddapi.dto.ArticleDTO;
+import com.openclassrooms.mddapi.repository.ArticleRepository;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Service class for exporting articles in bulk.
+ * Writes articles as newline-delimited JSON while they are read, so memory stays flat whatever the table size.
+ */
+@Service
+public class ArticleExportService {
+
+    /**
+     * Number of articles written between two flushes of the output.
+     */
+    private static final int FLUSH_INTERVAL = 500;
+
+    private final ArticleRepository articleRepository;
+    private final ObjectWriter articleWriter;
+
+    /**
+     * Constructor injection for required dependencies.
+     *
+     * @param articleRepository Repository for managing articles
+     * @param objectMapper Mapper used to serialize articles
+     */
+    public ArticleExportService(ArticleRepository articleRepository, ObjectMapper objectMapper) {
+        this.articleRepository = articleRepository;
+        // The output is flushed by batches rather than after every article
+        this.articleWriter = objectMapper.writerFor(ArticleDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes every article, without its comments, as one JSON object per line.
+     *
+     * @param outputStream The stream to write to, left open
+     * @throws IOException if writing to the stream fails
+     */
+    @Transactional(readOnly = true)
+    public void exportArticles(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = articleWriter.createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+
+        // Articles are read as DTOs, which select their content explicitly and are not kept by the persistence context
+        try (Stream<ArticleDTO> articles = articleRepository.streamAllDTOs()) {
+            Iterator<ArticleDTO> iterator = articles.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                articleWriter.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+
+                if (++written % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        generator.flush();
+    }
+}
@@ -1,52 +1,102 @@
 package com.openclassrooms.mddapi.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.openclassrooms.mddapi.cache.ArticleDetailCache;
+import com.openclassrooms.mddapi.cache.EncodedResponse;
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
 import com.openclassrooms.mddapi.dto.ArticleDTO;
+import com.openclassrooms.mddapi.dto.ArticleNotificationDTO;
+import com.openclassrooms.mddapi.dto.ArticleSummaryDTO;
 import com.openclassrooms.mddapi.dto.CommentDTO;
 import com.openclassrooms.mddapi.dto.CreateArticleDTO;
+import com.openclassrooms.mddapi.dto.CursorPageDTO;
 import com.openclassrooms.mddapi.model.Article;
-import com.openclassrooms.mddapi.model.Comment;
-import com.openclassrooms.mddapi.model.Subscription;
 import com.openclassrooms.mddapi.model.Theme;
 import com.openclassrooms.mddapi.model.User;
+import com.openclassrooms.mddapi.repository.ArticleFeedRepository;
 import com.openclassrooms.mddapi.repository.ArticleRepository;
+import com.openclassrooms.mddapi.repository.ArticleRepository.FeedVersion;
 import com.openclassrooms.mddapi.repository.CommentRepository;
-import com.openclassrooms.mddapi.repository.SubscriptionRepository;
+import com.openclassrooms.mddapi.repository.CommentRepository.ArticleCommentCount;
+import com.openclassrooms.mddapi.repository.ContentVersion;
 import com.openclassrooms.mddapi.repository.ThemeRepository;
 import com.openclassrooms.mddapi.repository.UserRepository;
+import org.springframework.data.domain.PageRequest;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Service class for managing articles in the system.
  * Handles operations related to creating, retrieving, updating, and deleting articles.
  */
 @Service
+@Timed("mddapi.service")
 public class ArticleService {
 
+    /**
+     * Default number of articles returned per feed page.
+     */
+    public static final int DEFAULT_FEED_PAGE_SIZE = 20;
+
+    /**
+     * Maximum number of articles returned per feed page, whatever the requested size.
+     */
+    public static final int MAX_FEED_PAGE_SIZE = 50;
+
     private final ArticleRepository articleRepository;
+    private final ArticleFeedRepository articleFeedRepository;
     private final ThemeRepository themeRepository;
-    private final SubscriptionRepository subscriptionRepository;
     private final UserRepository userRepository;
     private final CommentRepository commentRepository;
+    private final ArticleDetailCache articleDetailCache;
+    private final SubscriptionIndex subscriptionIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectWriter articleWriter;
+    private final int compressionMinSize;
 
     /**
      * Constructor injection for required dependencies.
      *
      * @param articleRepository Repository for managing articles
+     * @param articleFeedRepository Repository reading pages of the subscribed feed
      * @param themeRepository Repository for managing themes
-     * @param subscriptionRepository Repository for managing subscriptions
      * @param userRepository Repository for managing users
      * @param commentRepository Repository for managing comments
+     * @param articleDetailCache Cache of assembled article details
+     * @param subscriptionIndex In-memory index of subscriptions
+     * @param eventPublisher Publisher of the article creation events
+     * @param objectMapper Mapper used to encode cached article details
+     * @param compressionMinSize Size from which encoded article details are also compressed, in bytes
      */
-    public ArticleService(ArticleRepository articleRepository, ThemeRepository themeRepository, SubscriptionRepository subscriptionRepository, UserRepository userRepository, CommentRepository commentRepository) {
+    public ArticleService(ArticleRepository articleRepository, ArticleFeedRepository articleFeedRepository, ThemeRepository themeRepository, UserRepository userRepository, CommentRepository commentRepository, ArticleDetailCache articleDetailCache, SubscriptionIndex subscriptionIndex,
+                          ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+                          @Value("${mddapi.cache.article-detail.compression-min-size:1024}") int compressionMinSize) {
         this.articleRepository = articleRepository;
+        this.articleFeedRepository = articleFeedRepository;
         this.themeRepository = themeRepository;
-        this.subscriptionRepository = subscriptionRepository;
         this.userRepository = userRepository;
         this.commentRepository = commentRepository;
+        this.articleDetailCache = articleDetailCache;
+        this.subscriptionIndex = subscriptionIndex;
+        this.eventPublisher = eventPublisher;
+        this.articleWriter = objectMapper.writerFor(ArticleDTO.class);
+        this.compressionMinSize = compressionMinSize;
     }
 
     /**
@@ -77,98 +127,186 @@ public class ArticleService {
 
     /**
      * Creates a new article with authentication.
+     * The author is referenced by the ID from their token, without loading it from the database.
+     * Publishes an {@link ArticleCreatedEvent}, so that subscribers of the theme connected to the live stream are notified.
      * 
      * @param createArticleDTO The DTO containing article creation information
-     * @param userEmail The email of the user creating the article
-     * @return The created article
-     * @throws RuntimeException if user is not authenticated or not found
+     * @param currentUser The authenticated user creating the article
+     * @return The created article as a DTO, without comments
+     * @throws RuntimeException if user is not authenticated or theme is not found
      */
-    public Article createArticleWithAuth(CreateArticleDTO createArticleDTO, String userEmail) {
+    public ArticleDTO createArticleWithAuth(CreateArticleDTO createArticleDTO, AuthenticatedUser currentUser) {
         // Check if the user is authenticated
-        if (userEmail == null) {
+        if (currentUser == null) {
             throw new RuntimeException("User not authenticated!");
         }
     
-        // Retrieve the user by their email
-        User author = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new RuntimeException("User not found!"));
+        // Reference the author by their ID, the author row is never read
+        User author = userRepository.getReferenceById(currentUser.id());
     
         // Create the article with the authenticated user as the author
-        return createArticle(createArticleDTO, author);
+        Article article = createArticle(createArticleDTO, author);
+
+        // Notify the subscribers of the theme once the article is committed
+        eventPublisher.publishEvent(new ArticleCreatedEvent(new ArticleNotificationDTO(article.getId(), article.getTitle(),
+                article.getCreatedAt(), currentUser.username(), article.getTheme().getId(), article.getTheme().getTitle())));
+
+        return new ArticleDTO(article.getId(), article.getTitle(), article.getContent(),
+                article.getCreatedAt(), article.getUpdatedAt(), currentUser.username(),
+                article.getTheme().getId(), article.getTheme().getTitle());
     }
 
     /**
      * Retrieves all articles.
      * 
-     * @return A list of ArticleDTOs containing articles
+     * @return A list of ArticleSummaryDTOs containing articles
      */
-    public List<ArticleDTO> getAllArticles() {
-        // Retrieve all articles from the database
-        List<Article> articles = articleRepository.findAll();
-    
-        // Convert each article to its DTO representation
-        return articles.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public List<ArticleSummaryDTO> getAllArticles() {
+        // Retrieve all articles as summaries, with their author and theme joined
+        List<ArticleSummaryDTO> articles = articleRepository.findAllSummaries();
+
+        // Attach the comment count of every article in a single query
+        return attachCommentCounts(articles);
     }
 
     /**
-     * Retrieves an article by its ID and converts it to a DTO with its comments.
+     * Retrieves an article by its ID and converts it to a DTO with the first page of its comments.
+     * Served from the article detail cache when possible.
      * 
      * @param id The ID of the article to retrieve
-     * @return The article as a DTO with its comments
+     * @return The article as a DTO with the first page of its comments, shared with other callers and not to be modified
      * @throws RuntimeException if article is not found
      */
     public ArticleDTO getArticleById(Long id) {
-        // Retrieve the article by its ID
-        Article article = articleRepository.findById(id)
+        return articleDetailCache.get(id, this::loadArticleById);
+    }
+
+    /**
+     * Retrieves an article by its ID encoded as a JSON response body, with the first page of its comments.
+     * The encoding is cached with the article detail, so hot articles are neither loaded nor serialized again.
+     *
+     * @param id The ID of the article to retrieve
+     * @return The encoded article and its version, shared with other callers and not to be modified
+     * @throws RuntimeException if article is not found
+     */
+    public EncodedResponse getEncodedArticleById(Long id) {
+        return articleDetailCache.getEncoded(id, this::loadArticleById, this::encode);
+    }
+
+    /**
+     * Encodes an article detail as JSON, and also with gzip when it is large enough for compression to pay off.
+     *
+     * @param article The article as a DTO with the first page of its comments
+     * @return The encoded article and its version
+     */
+    private EncodedResponse encode(ArticleDTO article) {
+        try {
+            byte[] json = articleWriter.writeValueAsBytes(article);
+            byte[] gzip = null;
+            if (json.length >= compressionMinSize) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2);
+                try (GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+                    output.write(json);
+                }
+                gzip = compressed.toByteArray();
+            }
+            return new EncodedResponse(getArticleVersion(article), json, gzip);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads an article by its ID from the database and converts it to a DTO with the first page of its comments.
+     *
+     * @param id The ID of the article to load
+     * @return The article as a DTO with the first page of its comments
+     * @throws RuntimeException if article is not found
+     */
+    private ArticleDTO loadArticleById(Long id) {
+        // Retrieve the article as a DTO, with its author and theme joined
+        ArticleDTO article = articleRepository.findDTOById(id)
                 .orElseThrow(() -> new RuntimeException("Article not found!"));
 
-        // Retrieve the comments for the article
-        List<CommentDTO> comments = commentRepository.findByArticle(article).stream()
-                .map(this::convertCommentToDTO)
-                .collect(Collectors.toList());
+        // Attach the first page of comments, fetching one extra comment to know whether a next page exists
+        int pageSize = CommentService.DEFAULT_PAGE_SIZE;
+        CursorPageDTO<CommentDTO> comments = KeysetCursor.page(
+                commentRepository.findPageByArticleId(id, PageRequest.of(0, pageSize + 1)), pageSize,
+                comment -> new KeysetCursor(comment.getCreatedAt(), comment.getId()));
+        article.setComments(comments.getItems());
+        article.setNextCommentsCursor(comments.getNextCursor());
 
-        // Convert the article to its DTO representation with comments
-        return convertToDTO(article, comments);
+        // A single page holds every comment, otherwise count them
+        if (comments.getNextCursor() == null) {
+            List<CommentDTO> items = comments.getItems();
+            article.setCommentCount((long) items.size());
+            article.setLastCommentAt(items.isEmpty() ? null : items.get(items.size() - 1).getCreatedAt());
+        } else {
+            ContentVersion version = commentRepository.findVersionByArticleId(id);
+            article.setCommentCount(version.getCount());
+            article.setLastCommentAt(version.getLastModified());
+        }
+        return article;
     }
 
     /**
-     * Converts an Article entity to its DTO representation with comments.
-     * 
-     * @param article The Article entity to convert
-     * @param comments The comments for the article
-     * @return The corresponding ArticleDTO with comments
+     * Computes the version of an article from its last modification and its comments.
+     * Changes whenever the article is updated or one of its comments is added or deleted.
+     *
+     * @param article The article as a DTO, as returned by {@link #getArticleById(Long)}
+     * @return A string identifying the version of the article
      */
-    private ArticleDTO convertToDTO(Article article, List<CommentDTO> comments) {
-        return new ArticleDTO(
-                article.getId(),
-                article.getTitle(),
-                article.getContent(),
-                article.getCreatedAt(),
-                article.getUpdatedAt(),
-                article.getAuthor().getUsername(),
-                article.getTheme() != null ? article.getTheme().getId() : null,
-                article.getTheme() != null ? article.getTheme().getTitle() : null,
-                comments
-        );
+    public String getArticleVersion(ArticleDTO article) {
+        return article.getId() + "|" + article.getUpdatedAt() + "|" + article.getLastCommentAt() + "|" + article.getCommentCount();
     }
 
     /**
-     * Converts a Comment entity to its DTO representation.
-     * 
-     * @param comment The Comment entity to convert
-     * @return The corresponding CommentDTO
+     * Groups comments by article and sets them on their article DTOs; articles without comments get an empty list.
+     * Package-private for the mapping benchmarks.
+     *
+     * @param articles The article DTOs to complete
+     * @param comments The comments of these articles
+     * @return The same list, with the comments of each article set
+     */
+    static List<ArticleDTO> attachComments(List<ArticleDTO> articles, List<CommentDTO> comments) {
+        Map<Long, List<CommentDTO>> commentsByArticle = comments.stream()
+                .collect(Collectors.groupingBy(CommentDTO::getArticleId));
+
+        articles.forEach(article -> article.setComments(commentsByArticle.getOrDefault(article.getId(), new ArrayList<>())));
+        return articles;
+    }
+
+    /**
+     * Attaches their comment count to article summaries, counting the comments of all articles in one query.
+     *
+     * @param articles The article summaries to complete
+     * @return The same list, with the comment count of each article set
      */
-    private CommentDTO convertCommentToDTO(Comment comment) {
-        return new CommentDTO(
-                comment.getId(),
-                comment.getContent(),
-                comment.getArticle().getId(),
-                comment.getSender().getId(),
-                comment.getSender().getUsername(),
-                comment.getCreatedAt()
-        );
+    private List<ArticleSummaryDTO> attachCommentCounts(List<ArticleSummaryDTO> articles) {
+        if (articles.isEmpty()) {
+            return articles;
+        }
+
+        // Count the comments of all articles, grouped by article ID
+        List<Long> articleIds = articles.stream().map(ArticleSummaryDTO::getId).collect(Collectors.toList());
+        return attachCommentCounts(articles, commentRepository.countByArticleIdIn(articleIds));
+    }
+
+    /**
+     * Sets their comment count on article summaries; articles without a count get 0.
+     * Package-private for the mapping benchmarks.
+     *
+     * @param articles The article summaries to complete
+     * @param counts The comment counts of these articles
+     * @return The same list, with the comment count of each article set
+     */
+    static List<ArticleSummaryDTO> attachCommentCounts(List<ArticleSummaryDTO> articles, List<ArticleCommentCount> counts) {
+        Map<Long, Long> countsByArticle = counts.stream()
+                .collect(Collectors.toMap(ArticleCommentCount::getArticleId, ArticleCommentCount::getCommentCount));
+
+        articles.forEach(article -> article.setCommentCount(countsByArticle.getOrDefault(article.getId(), 0L)));
+        return articles;
     }
 
     /**
@@ -176,10 +314,10 @@ public class ArticleService {
      * 
      * @param id The ID of the article to update
      * @param articleDTO The DTO containing updated article information
-     * @return The updated article
+     * @return The updated article as a DTO, without comments
      * @throws RuntimeException if article or theme is not found
      */
-    public Article updateArticle(Long id, ArticleDTO articleDTO) {
+    public ArticleDTO updateArticle(Long id, ArticleDTO articleDTO) {
         // Retrieve the article by its ID
         Article article = articleRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Article not found!"));
@@ -195,7 +333,14 @@ public class ArticleService {
         article.setUpdatedAt(LocalDateTime.now());
 
         // Save the updated article to the database
-        return articleRepository.save(article);
+        Article savedArticle = articleRepository.save(article);
+
+        // Evict the previous version of the article from the cache
+        articleDetailCache.invalidate(id);
+
+        return new ArticleDTO(savedArticle.getId(), savedArticle.getTitle(), savedArticle.getContent(),
+                savedArticle.getCreatedAt(), savedArticle.getUpdatedAt(), savedArticle.getAuthor().getUsername(),
+                theme.getId(), theme.getTitle());
     }
 
     /**
@@ -211,63 +356,125 @@ public class ArticleService {
 
         // Delete the article from the database
         articleRepository.delete(article);
+
+        // Evict the article from the cache
+        articleDetailCache.invalidate(id);
     }
 
     /**
-     * Retrieves all articles from themes subscribed by a user.
-     * 
+     * Retrieves all articles from themes subscribed by a user, unless the client already has their current version.
+     * The version is computed first, with {@link #getSubscribedFeedVersion(Long, List)}, and the articles are only
+     * loaded when it is not current; both are read in the same transaction, thus from the same database.
+     *
      * @param userId The ID of the user
-     * @return A list of ArticleDTOs containing articles from subscribed themes
+     * @param isCurrent Tells whether the client already has a version, such as an If-None-Match check
+     * @return The version, with the ArticleSummaryDTOs from subscribed themes unless the client's version is current
      * @throws RuntimeException if user is not found
      */
-    public List<ArticleDTO> getArticlesBySubscribedThemes(Long userId) {
-        // Retrieve the user by their ID
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found!"));
+    @Transactional(readOnly = true)
+    public Versioned<List<ArticleSummaryDTO>> getArticlesBySubscribedThemes(Long userId, Predicate<String> isCurrent) {
+        // Retrieve the subscribed themes from the index, without querying subscriptions
+        List<Long> themeIds = getSubscribedThemeIds(userId);
+        String version = getSubscribedFeedVersion(userId, themeIds);
+        if (isCurrent.test(version)) {
+            return new Versioned<>(version, null);
+        }
 
-        // Retrieve the subscriptions for the user
-        List<Subscription> subscriptions = subscriptionRepository.findByUser(user);
+        // Check that the user exists, from the second-level cache
+        if (userRepository.findById(userId).isEmpty()) {
+            throw new RuntimeException("User not found!");
+        }
 
-        // Retrieve the themes from the subscriptions
-        List<Theme> themes = subscriptions.stream().map(Subscription::getTheme).collect(Collectors.toList());
+        if (themeIds.isEmpty()) {
+            return new Versioned<>(version, new ArrayList<>());
+        }
 
-        // Retrieve the articles from the themes
-        List<Article> articles = articleRepository.findByThemeIn(themes);
+        // Retrieve the articles from the subscribed themes as summaries
+        List<ArticleSummaryDTO> articles = articleRepository.findSummariesByThemeIdIn(themeIds);
 
-        // Convert each article to its DTO representation
-        return articles.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        // Attach the comment count of every article in a single query
+        return new Versioned<>(version, attachCommentCounts(articles));
     }
 
     /**
-     * Converts an Article entity to its DTO representation.
-     * 
-     * @param article The Article entity to convert
-     * @return The corresponding ArticleDTO
+     * Retrieves one page of the articles from themes subscribed by a user, newest first.
+     * The page is located with a keyset over {@code (createdAt, id)}, so its cost depends
+     * on the page size rather than on the number of articles in the subscribed themes.
+     *
+     * Each page has its own version, derived from the version of the whole feed and the position of the page,
+     * and is only loaded when the client does not already have it.
+     *
+     * @param userId The ID of the user
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param size The requested page size, capped to {@link #MAX_FEED_PAGE_SIZE}
+     * @param isCurrent Tells whether the client already has a version, such as an If-None-Match check
+     * @return The version of the page, with its ArticleSummaryDTOs and the cursor of the next page unless the
+     *         client's version is current
+     * @throws RuntimeException if user is not found
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public Versioned<CursorPageDTO<ArticleSummaryDTO>> getSubscribedFeed(Long userId, String cursor, int size,
+                                                                        Predicate<String> isCurrent) {
+        // Retrieve the subscribed themes from the index, without querying subscriptions
+        List<Long> themeIds = getSubscribedThemeIds(userId);
+        String version = getSubscribedFeedVersion(userId, themeIds) + "|" + cursor + "|" + size;
+        if (isCurrent.test(version)) {
+            return new Versioned<>(version, null);
+        }
+
+        // Check that the user exists, from the second-level cache
+        if (userRepository.findById(userId).isEmpty()) {
+            throw new RuntimeException("User not found!");
+        }
+
+        KeysetCursor position = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+        if (themeIds.isEmpty()) {
+            return new Versioned<>(version, new CursorPageDTO<>(new ArrayList<>(), null));
+        }
+
+        // Fetch one extra article to know whether a next page exists
+        int pageSize = Math.min(Math.max(size, 1), MAX_FEED_PAGE_SIZE);
+        List<ArticleSummaryDTO> articles;
+        if (position == null) {
+            articles = articleFeedRepository.findFeed(themeIds, pageSize + 1);
+        } else {
+            articles = articleFeedRepository.findFeedBefore(themeIds, position.createdAt(), position.id(), pageSize + 1);
+        }
+
+        // Build the cursor from the last article of the page
+        CursorPageDTO<ArticleSummaryDTO> page = KeysetCursor.page(articles, pageSize,
+                article -> new KeysetCursor(article.getCreatedAt(), article.getId()));
+        attachCommentCounts(page.getItems());
+        return new Versioned<>(version, page);
+    }
+
+    /**
+     * Computes the version of the articles from themes subscribed by a user, with one aggregated query
+     * that loads no article. Changes whenever one of these articles or their themes is added, modified or removed,
+     * when a comment is added to one of them, or when the user subscribes to or unsubscribes from a theme.
+     * Deleting a comment other than the latest one only shows with the next of these changes.
+     *
+     * @param userId The ID of the user
+     * @param themeIds The IDs of the themes subscribed by the user
+     * @return A string identifying the version of the user's feed
+     */
+    private String getSubscribedFeedVersion(Long userId, List<Long> themeIds) {
+        if (themeIds.isEmpty()) {
+            return userId + "|" + themeIds;
+        }
+        FeedVersion feed = articleRepository.findFeedVersionByThemeIdIn(themeIds);
+        return userId + "|" + themeIds + "|" + feed.getArticlesLastModified() + "|" + feed.getArticleCount()
+                + "|" + feed.getThemesLastModified() + "|" + feed.getLastCommentAt();
+    }
+
+    /**
+     * Retrieves the IDs of the themes subscribed by a user from the subscription index.
+     *
+     * @param userId The ID of the user
+     * @return The IDs of the subscribed themes, empty if there is none
      */
-    private ArticleDTO convertToDTO(Article article) {
-        ArticleDTO dto = new ArticleDTO();
-        dto.setId(article.getId());  
-        dto.setTitle(article.getTitle());  
-        dto.setContent(article.getContent());
-        
-        dto.setAuthorUsername(article.getAuthor().getUsername());
-        dto.setCreatedAt(article.getCreatedAt());
-        dto.setUpdatedAt(article.getUpdatedAt());
-
-        // Retrieve the comments for the article
-        List<CommentDTO> commentDTOs = article.getComments().stream().map(comment -> {
-            CommentDTO commentDTO = new CommentDTO();
-            commentDTO.setId(comment.getId());
-            commentDTO.setContent(comment.getContent());
-            commentDTO.setSenderUsername(comment.getSender().getUsername());
-            commentDTO.setCreatedAt(comment.getCreatedAt());
-            return commentDTO;
-        }).collect(Collectors.toList());
-
-        // Set the comments for the article DTO
-        dto.setComments(commentDTOs);
-        return dto;
+    private List<Long> getSubscribedThemeIds(Long userId) {
+        return Arrays.stream(subscriptionIndex.getThemeIds(userId)).boxed().collect(Collectors.toList());
     }
 }
@@ -0,0 +1,252 @@
+package com.openclassrooms.mddapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import com.openclassrooms.mddapi.dto.ArticleNotificationDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live streams (Server-Sent Events) of the articles created in the themes subscribed by connected users.
+ *
+ * Once an article is committed, its notification is encoded once, then fanned out to the streams of the theme's
+ * subscribers, found with the {@link SubscriptionIndex}: the fan-out only queues the notification on each stream,
+ * which a {@link StreamSender} writes on its own pool of {@code writerThreads} threads. A stream lagging
+ * {@code bufferSize} notifications behind, or whose write lasts longer than {@code writeTimeout}, is disconnected,
+ * and the client reconnects later. Idle streams hold no thread, and receive a heartbeat comment every
+ * {@code heartbeatInterval}.
+ *
+ * Notifications only reach the streams connected to this instance.
+ * Publishes the {@code articles.stream.connections} gauge and the {@code articles.stream.evictions} counter.
+ */
+@Component
+public class ArticleStreamHub implements SmartLifecycle {
+
+    private static final Message HEARTBEAT = new Message(null, null);
+
+    private final SubscriptionIndex subscriptionIndex;
+    private final ObjectMapper objectMapper;
+    private final int maxConnections;
+    private final Duration timeout;
+    private final StreamSender<Message, Connection> sender;
+
+    // Open streams of each connected user; sets are only changed within compute() so that empty ones can be dropped
+    private final Map<Long, Set<Connection>> connectionsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * @param subscriptionIndex Index the subscribers of a theme are read from
+     * @param objectMapper Mapper used to encode notifications
+     * @param maxConnections Maximum number of streams open at once
+     * @param bufferSize Number of notifications a stream may lag behind before it is disconnected
+     * @param timeout Time after which a stream is closed, the client reconnecting
+     * @param heartbeatInterval Time between two heartbeats of an idle stream
+     * @param writerThreads Number of threads writing the notifications to the streams
+     * @param writeTimeout Maximum time a write may last before the stream is disconnected
+     * @param meterRegistry Registry the stream metrics are published to
+     */
+    public ArticleStreamHub(SubscriptionIndex subscriptionIndex, ObjectMapper objectMapper,
+                            @Value("${mddapi.articles.stream.max-connections:30000}") int maxConnections,
+                            @Value("${mddapi.articles.stream.buffer-size:32}") int bufferSize,
+                            @Value("${mddapi.articles.stream.timeout:30m}") Duration timeout,
+                            @Value("${mddapi.articles.stream.heartbeat-interval:30s}") Duration heartbeatInterval,
+                            @Value("${mddapi.articles.stream.writer-threads:8}") int writerThreads,
+                            @Value("${mddapi.articles.stream.write-timeout:10s}") Duration writeTimeout,
+                            MeterRegistry meterRegistry) {
+        this.subscriptionIndex = subscriptionIndex;
+        this.objectMapper = objectMapper;
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
+        Counter evictions = Counter.builder("articles.stream.evictions")
+                .description("Number of article streams disconnected because their client could not keep up")
+                .register(meterRegistry);
+        this.sender = new StreamSender<>("article-stream", maxConnections, message -> 1, bufferSize, writeTimeout,
+                heartbeatInterval, HEARTBEAT, writerThreads, evictions, this::forget);
+        Gauge.builder("articles.stream.connections", connections, AtomicInteger::get)
+                .description("Number of open article streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the articles created in the themes subscribed by a user.
+     *
+     * @param userId The ID of the connected user
+     * @return The emitter of the stream, to be returned by the controller
+     * @throws IllegalStateException if the maximum number of streams is reached
+     */
+    public SseEmitter open(Long userId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new IllegalStateException("Too many article streams!");
+        }
+
+        Connection connection = new Connection(userId, createEmitter(timeout.toMillis()));
+        connection.emitter.onCompletion(() -> sender.remove(connection));
+        connection.emitter.onTimeout(() -> {
+            // End the stream normally, rather than with the error status of a timed-out request
+            sender.remove(connection);
+            sender.close(connection, connection.emitter::complete, true);
+        });
+        connection.emitter.onError(error -> sender.remove(connection));
+        try {
+            // Sent once the controller returns, this first comment commits the response headers
+            connection.emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            connections.decrementAndGet();
+            throw new UncheckedIOException(e);
+        }
+        connectionsByUser.compute(userId, (id, userConnections) -> {
+            Set<Connection> updated = userConnections == null ? ConcurrentHashMap.newKeySet() : userConnections;
+            updated.add(connection);
+            return updated;
+        });
+        sender.open(connection);
+        return connection.emitter;
+    }
+
+    /**
+     * Queues the notification of a committed article on the streams of the subscribers of its theme.
+     *
+     * @param event The creation event of the article
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleCreated(ArticleCreatedEvent event) {
+        if (connectionsByUser.isEmpty()) {
+            return;
+        }
+        ArticleNotificationDTO article = event.article();
+        Message message = new Message(String.valueOf(article.getId()), encode(article));
+        long themeId = article.getThemeId();
+
+        // Walk the smaller side: the subscribers of the theme, or the connected users
+        if (subscriptionIndex.countSubscribers(themeId) <= connectionsByUser.size()) {
+            for (long userId : subscriptionIndex.getSubscriberIds(themeId)) {
+                Set<Connection> userConnections = connectionsByUser.get(userId);
+                if (userConnections != null) {
+                    userConnections.forEach(connection -> sender.send(connection, message));
+                }
+            }
+        } else {
+            connectionsByUser.forEach((userId, userConnections) -> {
+                if (subscriptionIndex.isSubscribed(userId, themeId)) {
+                    userConnections.forEach(connection -> sender.send(connection, message));
+                }
+            });
+        }
+    }
+
+    /**
+     * Counts the open streams.
+     *
+     * @return The number of open streams
+     */
+    public int countConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public synchronized void start() {
+        sender.start();
+    }
+
+    /**
+     * Stops the heartbeats and closes every stream, so that clients reconnect to another instance.
+     */
+    @Override
+    public synchronized void stop() {
+        sender.stop(connection -> {
+            sender.remove(connection);
+            sender.close(connection, connection.emitter::complete, true);
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return sender.isRunning();
+    }
+
+    /**
+     * Creates the emitter of a new stream.
+     *
+     * @param timeout Time after which the stream is closed, in milliseconds
+     * @return The emitter, not yet returned to the client
+     */
+    protected SseEmitter createEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    /**
+     * Forgets a stream removed from the sender.
+     */
+    private void forget(Connection connection) {
+        connectionsByUser.computeIfPresent(connection.userId, (id, userConnections) -> {
+            userConnections.remove(connection);
+            return userConnections.isEmpty() ? null : userConnections;
+        });
+        connections.decrementAndGet();
+    }
+
+    private String encode(ArticleNotificationDTO article) {
+        try {
+            return objectMapper.writeValueAsString(article);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Event queued on a stream, encoded once for every subscriber.
+     *
+     * @param id The ID of the event, null for a heartbeat
+     * @param json The data of the event as JSON, null for a heartbeat
+     */
+    private record Message(String id, String json) {
+    }
+
+    /**
+     * Open stream of a user.
+     */
+    private static final class Connection extends StreamSender.Outbox<Message> {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        @Override
+        protected void write(Message message) throws IOException {
+            emitter.send(message == HEARTBEAT
+                    ? SseEmitter.event().comment("heartbeat")
+                    : SseEmitter.event().id(message.id()).name("article").data(message.json(), MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        protected void closeEvicted() {
+            emitter.complete();
+        }
+
+        @Override
+        public String toString() {
+            return "Article stream of user " + userId;
+        }
+    }
+}
@@ -3,16 +3,21 @@ package com.openclassrooms.mddapi.service;
 import com.openclassrooms.mddapi.dto.AuthResponseDTO;
 import com.openclassrooms.mddapi.dto.LoginDTO;
 import com.openclassrooms.mddapi.dto.RegisterDTO;
+import com.openclassrooms.mddapi.model.User;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * Service class for handling authentication-related operations.
  * Provides methods for user registration and login, generating JWT tokens for authenticated users.
  */
 @Service
+@Timed("mddapi.service")
 public class AuthService {
 
     // Dependencies for JWT management, user management, and Spring Security authentication
@@ -35,17 +40,25 @@ public class AuthService {
 
     /**
      * Registers a new user and generates a JWT token for authentication.
+     * The password is only hashed once, before the user is saved: the token is issued for the saved user without
+     * checking the password again, so that a full hashing pool can only reject the request before the account exists.
      * 
      * @param registerDTO DTO containing the user registration details
      * @return AuthResponseDTO containing the generated JWT token
+     * @throws com.openclassrooms.mddapi.config.PasswordHashingOverloadedException if the password cannot be hashed yet,
+     *         in which case no user was created
      */
     public AuthResponseDTO register(RegisterDTO registerDTO) {
         // Register the new user using the UserService
-        userService.registerUser(registerDTO);
+        User user = userService.registerUser(registerDTO);
 
-        // Authenticate the user after registration using Spring Security's AuthenticationManager
-        Authentication authenticate = authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(registerDTO.getEmail(), registerDTO.getPassword())
+        // Authenticate the saved user, whose password was just set by this request
+        AuthenticatedUserDetails principal = new AuthenticatedUserDetails(
+            user.getId(), user.getEmail(), user.getUsername(), user.getPassword(), List.of()
+        );
+        principal.eraseCredentials();
+        Authentication authenticate = UsernamePasswordAuthenticationToken.authenticated(
+            principal, null, principal.getAuthorities()
         );
 
         // Generate a JWT token using the JwtService
@@ -0,0 +1,38 @@
+package com.openclassrooms.mddapi.service;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * The authenticated user of a request, as decoded from their JWT.
+ *
+ * @param id The ID of the user
+ * @param email The email of the user, subject of the token
+ * @param username The username of the user
+ */
+public record AuthenticatedUser(Long id, String email, String username) {
+
+    /**
+     * Claim holding the ID of the user.
+     */
+    public static final String CLAIM_USER_ID = "userId";
+
+    /**
+     * Claim holding the username of the user.
+     */
+    public static final String CLAIM_USERNAME = "username";
+
+    /**
+     * Reads the authenticated user from the claims of a decoded token.
+     *
+     * @param jwt The decoded token
+     * @return The authenticated user, or null if the token predates the user ID and username claims
+     */
+    public static AuthenticatedUser fromJwt(Jwt jwt) {
+        Object id = jwt.getClaims().get(CLAIM_USER_ID);
+        String username = jwt.getClaimAsString(CLAIM_USERNAME);
+        if (!(id instanceof Number) || username == null) {
+            return null;
+        }
+        return new AuthenticatedUser(((Number) id).longValue(), jwt.getSubject(), username);
+    }
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.mddapi.service;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Spring Security user details carrying the ID and display username of the user next to their credentials.
+ * The Spring Security username is the email, as before; the extra fields let {@link JwtService}
+ * embed them in the token so authenticated requests do not need to look the user up again.
+ */
+public class AuthenticatedUserDetails extends User {
+
+    private final Long id;
+    private final String displayUsername;
+
+    /**
+     * @param id The ID of the user
+     * @param email The email of the user, used as the Spring Security username
+     * @param displayUsername The username of the user, as displayed in the application
+     * @param password The encoded password of the user
+     * @param authorities The authorities granted to the user
+     */
+    public AuthenticatedUserDetails(Long id, String email, String displayUsername, String password,
+                                    Collection<? extends GrantedAuthority> authorities) {
+        super(email, password, authorities);
+        this.id = id;
+        this.displayUsername = displayUsername;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDisplayUsername() {
+        return displayUsername;
+    }
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.mddapi.service;
+
+import com.openclassrooms.mddapi.dto.CommentDTO;
+
+/**
+ * Application event published by {@link CommentService} when a comment is added to an article.
+ * Listeners bound to the transaction phase receive it once the comment is committed.
+ *
+ * @param comment The added comment, with its ID and sender
+ */
+public record CommentAddedEvent(CommentDTO comment) {
+}
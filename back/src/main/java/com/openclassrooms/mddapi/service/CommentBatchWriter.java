@@ -0,0 +1,289 @@
+package com.openclassrooms.mddapi.service;
+
+import com.openclassrooms.mddapi.model.Article;
+import com.openclassrooms.mddapi.model.Comment;
+import com.openclassrooms.mddapi.model.User;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind path of comment inserts.
+ * Comments submitted within {@code maxDelay} of each other are inserted by a single writer thread in one transaction,
+ * which Hibernate sends as one JDBC batch; each caller still waits for the commit and gets the id of its comment.
+ * If a batch fails, its comments are inserted one by one, so that only the faulty ones fail.
+ *
+ * When the queue is full or the writer is stopped, comments are inserted directly by the calling thread.
+ * A caller waits at most {@code maxWait} for its comment: if the writer has not taken it yet, the caller inserts it
+ * itself, otherwise it gives up. If the writer thread is interrupted, it fails the comments it holds and stops,
+ * so that the following comments are inserted directly.
+ * Publishes the {@code comments.write.batch.size} summary, the {@code comments.write.latency} timer
+ * and the {@code comments.write.queue.size} gauge.
+ */
+@Component
+public class CommentBatchWriter implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentBatchWriter.class);
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingComment> queue;
+    private final int maxBatchSize;
+    private final Duration maxDelay;
+    private final Duration maxWait;
+    private final DistributionSummary batchSize;
+    private final Timer latency;
+    private volatile Thread writer;
+
+    /**
+     * @param entityManager The shared entity manager the comments are persisted with
+     * @param transactionManager The transaction manager the batches are committed with
+     * @param queueCapacity Number of comments allowed to wait for the writer
+     * @param maxBatchSize Maximum number of comments inserted in one batch
+     * @param maxDelay Maximum time the writer waits for more comments before inserting a batch
+     * @param maxWait Maximum time a caller waits for the writer to commit its comment
+     * @param meterRegistry Registry the batching metrics are published to
+     */
+    public CommentBatchWriter(EntityManager entityManager, PlatformTransactionManager transactionManager,
+                              @Value("${mddapi.comments.write-behind.queue-capacity:1000}") int queueCapacity,
+                              @Value("${mddapi.comments.write-behind.max-batch-size:50}") int maxBatchSize,
+                              @Value("${mddapi.comments.write-behind.max-delay:5ms}") Duration maxDelay,
+                              @Value("${mddapi.comments.write-behind.max-wait:10s}") Duration maxWait,
+                              MeterRegistry meterRegistry) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.maxWait = maxWait;
+        this.batchSize = DistributionSummary.builder("comments.write.batch.size")
+                .description("Number of comments inserted per batch")
+                .register(meterRegistry);
+        this.latency = Timer.builder("comments.write.latency")
+                .description("Time between the submission of a comment and the commit of its insert")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("comments.write.queue.size", queue, BlockingQueue::size)
+                .description("Number of comments waiting for the writer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Inserts a comment and waits until it is committed.
+     *
+     * @param articleId The ID of the commented article
+     * @param senderId The ID of the user sending the comment
+     * @param content The content of the comment
+     * @param createdAt The creation time of the comment
+     * @return The ID of the inserted comment
+     * @throws org.springframework.dao.DataIntegrityViolationException if the article or the user does not exist
+     * @throws QueryTimeoutException if the writer did not commit the comment within {@code maxWait},
+     *         in which case it may still be committed later
+     */
+    public Long insert(Long articleId, Long senderId, String content, LocalDateTime createdAt) {
+        PendingComment pending = new PendingComment(articleId, senderId, content, createdAt);
+        if (writer == null || !queue.offer(pending)) {
+            insertOne(pending);
+        } else if (writer == null && queue.remove(pending)) {
+            // The writer stopped before taking the comment
+            insertOne(pending);
+        }
+
+        try {
+            return await(pending);
+        } catch (TimeoutException e) {
+            if (!queue.remove(pending)) {
+                throw new QueryTimeoutException("Comment not committed within " + maxWait, e);
+            }
+            // The writer is still busy with earlier comments
+            insertOne(pending);
+            return pending.result.join();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        writer = new Thread(this::drain, "comment-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops accepting comments, and waits for the writer to insert the queued ones.
+     */
+    @Override
+    public synchronized void stop() {
+        Thread stopped = writer;
+        writer = null;
+        if (stopped != null) {
+            try {
+                stopped.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<PendingComment> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(this::insertOne);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return writer != null;
+    }
+
+    /**
+     * Waits at most {@code maxWait} for the result of a comment.
+     */
+    private Long await(PendingComment pending) throws TimeoutException {
+        try {
+            return pending.result.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a comment insert", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Comment insert failed", e.getCause());
+        }
+    }
+
+    /**
+     * Loop of the writer thread: takes the first waiting comment, gathers those arriving within {@code maxDelay}
+     * up to {@code maxBatchSize}, and inserts them together.
+     * When interrupted, the writer fails the comments it gathered and those still queued, then stops.
+     */
+    private void drain() {
+        List<PendingComment> batch = new ArrayList<>(maxBatchSize);
+        while (writer != null || !queue.isEmpty()) {
+            try {
+                PendingComment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < maxBatchSize) {
+                    PendingComment next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                insertAll(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon(batch);
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Comment writer failed", e);
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Stops the interrupted writer: callers insert their comments directly from now on, and those left with
+     * the writer fail, since inserting them on an interrupted thread would not be reliable.
+     */
+    private void abandon(List<PendingComment> batch) {
+        if (writer == Thread.currentThread()) {
+            writer = null;
+        }
+        logger.error("Comment writer interrupted, failing {} pending comments", batch.size() + queue.size());
+        // Taken after the writer is cleared, so that a comment queued meanwhile is either failed here or removed
+        // from the queue by its caller and inserted directly
+        queue.drainTo(batch);
+        IllegalStateException failure = new IllegalStateException("Comment writer interrupted");
+        batch.forEach(pending -> pending.result.completeExceptionally(failure));
+    }
+
+    /**
+     * Inserts a batch in one transaction, or each of its comments in its own transaction if the batch fails.
+     */
+    private void insertAll(List<PendingComment> batch) {
+        batchSize.record(batch.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::persist));
+        } catch (RuntimeException e) {
+            logger.debug("Comment batch of {} failed, inserting its comments one by one", batch.size(), e);
+            batch.forEach(this::insertOne);
+            return;
+        }
+        batch.forEach(this::complete);
+    }
+
+    private void insertOne(PendingComment pending) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(pending));
+        } catch (RuntimeException e) {
+            pending.result.completeExceptionally(e);
+            return;
+        }
+        complete(pending);
+    }
+
+    /**
+     * Persists a comment with references to its article and sender, which are never loaded.
+     * The comment is created anew on every attempt, since a rolled back one keeps its allocated id.
+     */
+    private void persist(PendingComment pending) {
+        Comment comment = new Comment();
+        comment.setArticle(entityManager.getReference(Article.class, pending.articleId));
+        comment.setSender(entityManager.getReference(User.class, pending.senderId));
+        comment.setContent(pending.content);
+        comment.setCreatedAt(pending.createdAt);
+        comment.setUpdatedAt(pending.createdAt);
+        entityManager.persist(comment);
+        pending.comment = comment;
+    }
+
+    private void complete(PendingComment pending) {
+        latency.record(System.nanoTime() - pending.submittedAt, TimeUnit.NANOSECONDS);
+        pending.result.complete(pending.comment.getId());
+    }
+
+    /**
+     * A comment waiting to be inserted, and the future completed with its ID.
+     */
+    private static final class PendingComment {
+        private final Long articleId;
+        private final Long senderId;
+        private final String content;
+        private final LocalDateTime createdAt;
+        private final long submittedAt = System.nanoTime();
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private Comment comment;
+
+        private PendingComment(Long articleId, Long senderId, String content, LocalDateTime createdAt) {
+            this.articleId = articleId;
+            this.senderId = senderId;
+            this.content = content;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -1,97 +1,153 @@
 package com.openclassrooms.mddapi.service;
 
+import com.openclassrooms.mddapi.cache.ArticleDetailCache;
 import com.openclassrooms.mddapi.dto.CommentDTO;
-import com.openclassrooms.mddapi.model.Article;
+import com.openclassrooms.mddapi.dto.CursorPageDTO;
+import com.openclassrooms.mddapi.dto.UserDTO;
 import com.openclassrooms.mddapi.model.Comment;
-import com.openclassrooms.mddapi.model.User;
 import com.openclassrooms.mddapi.repository.ArticleRepository;
 import com.openclassrooms.mddapi.repository.CommentRepository;
-import com.openclassrooms.mddapi.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service class for managing comments in the system.
  * Handles operations related to creating, retrieving, and managing comments.
  */
 @Service
+@Timed("mddapi.service")
 @RequiredArgsConstructor
 public class CommentService {
 
+    /**
+     * Number of comments returned when the client does not ask for a page size,
+     * and number of comments embedded in the article detail.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Maximum number of comments returned in one page.
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final CommentRepository commentRepository;
     private final ArticleRepository articleRepository;
-    private final UserRepository userRepository;
+    private final UserService userService;
+    private final CommentBatchWriter commentBatchWriter;
+    private final ArticleDetailCache articleDetailCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Adds a new comment to an article.
+     * Publishes a {@link CommentAddedEvent}, so that readers connected to the live comments of the article receive it.
      * 
      * @param commentDTO The DTO containing comment information
      * @return The created comment as a DTO
      * @throws RuntimeException if article or user is not found
      */
     public CommentDTO addComment(CommentDTO commentDTO) {
-        // Retrieve the article associated with the comment
-        Article article = articleRepository.findById(commentDTO.getArticleId())
-                .orElseThrow(() -> new RuntimeException("Article not found!"));
-    
-        // Retrieve the user who sent the comment
-        User sender = userRepository.findById(commentDTO.getUserId()) 
-                .orElseThrow(() -> new RuntimeException("User not found!"));
-    
-        // Create a new comment entity
-        Comment comment = new Comment();
-        comment.setArticle(article);
-        comment.setSender(sender);
-        comment.setContent(commentDTO.getContent());
-        comment.setCreatedAt(LocalDateTime.now());
-        comment.setUpdatedAt(LocalDateTime.now());
-    
-        // Save the comment to the database
-        Comment savedComment = commentRepository.save(comment);
-        
-        // Convert the saved comment to its DTO representation
-        return convertToDTO(savedComment);
+        // Retrieve the user who sent the comment, from the profile cache
+        UserDTO sender = userService.getUserProfile(commentDTO.getUserId());
+
+        // Insert the comment through the batch writer, which references the article and the sender without loading them
+        LocalDateTime createdAt = LocalDateTime.now();
+        Long commentId;
+        try {
+            commentId = commentBatchWriter.insert(commentDTO.getArticleId(), sender.getId(), commentDTO.getContent(), createdAt);
+        } catch (DataIntegrityViolationException e) {
+            // The sender exists, so the foreign key of the article failed
+            throw new RuntimeException("Article not found!");
+        }
+
+        // Evict the article from the cache so its comments are reloaded
+        articleDetailCache.invalidate(commentDTO.getArticleId());
+
+        CommentDTO comment = new CommentDTO(commentId, commentDTO.getContent(), commentDTO.getArticleId(), sender.getId(),
+                sender.getUsername(), createdAt);
+
+        // Broadcast the committed comment to the live readers of the article
+        eventPublisher.publishEvent(new CommentAddedEvent(comment));
+        return comment;
     }
 
     /**
-     * Converts a Comment entity to its DTO representation.
-     * 
-     * @param comment The Comment entity to convert
-     * @return The corresponding CommentDTO
+     * Retrieves one page of the comments of an article, oldest first.
+     * The page is located with a keyset over {@code (createdAt, id)}, so its cost depends
+     * on the page size rather than on the number of comments of the article.
+     *
+     * @param articleId The ID of the article to retrieve comments for
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param size The requested page size, capped to {@link #MAX_PAGE_SIZE}
+     * @return A page of CommentDTOs with the cursor of the next page
+     * @throws RuntimeException if article is not found
+     * @throws IllegalArgumentException if the cursor is malformed
      */
-    private CommentDTO convertToDTO(Comment comment) {
-        CommentDTO dto = new CommentDTO();
-        dto.setId(comment.getId());
-        dto.setContent(comment.getContent());
-        dto.setArticleId(comment.getArticle().getId());
-        dto.setUserId(comment.getSender().getId());
-        dto.setSenderUsername(comment.getSender().getUsername());
-        dto.setCreatedAt(comment.getCreatedAt());
-        return dto;
+    @Transactional(readOnly = true)
+    public CursorPageDTO<CommentDTO> getCommentsByArticle(Long articleId, String cursor, int size) {
+        KeysetCursor position = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+        return getPage(articleId, position, size);
     }
 
     /**
-     * Retrieves all comments associated with a specific article.
-     * 
+     * Retrieves the comments of an article following a given comment, oldest first.
+     * Used to catch up on the comments a reader missed, for instance when reconnecting to the live comments.
+     *
      * @param articleId The ID of the article to retrieve comments for
-     * @return A list of CommentDTOs representing the comments
+     * @param commentId The ID of the last comment known by the reader
+     * @param size The requested page size, capped to {@link #MAX_PAGE_SIZE}
+     * @return A page of CommentDTOs with the cursor of the next page
+     * @throws IllegalArgumentException if the comment does not belong to the article
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<CommentDTO> getCommentsAfter(Long articleId, Long commentId, int size) {
+        LocalDateTime createdAt = commentRepository.findCreatedAtByIdAndArticleId(commentId, articleId)
+                .orElseThrow(() -> new IllegalArgumentException("Comment not found in article!"));
+        return getPage(articleId, new KeysetCursor(createdAt, commentId), size);
+    }
+
+    private CursorPageDTO<CommentDTO> getPage(Long articleId, KeysetCursor position, int size) {
+        // Fetch one extra comment to know whether a next page exists
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<CommentDTO> comments;
+        if (position == null) {
+            comments = commentRepository.findPageByArticleId(articleId, limit);
+        } else {
+            comments = commentRepository.findPageByArticleIdAfter(articleId, position.createdAt(), position.id(), limit);
+        }
+
+        // Only an empty first page needs to check that the article exists
+        if (comments.isEmpty() && position == null && !articleRepository.existsById(articleId)) {
+            throw new RuntimeException("Article not found!");
+        }
+
+        return KeysetCursor.page(comments, pageSize, comment -> new KeysetCursor(comment.getCreatedAt(), comment.getId()));
+    }
+
+    /**
+     * Counts the comments of an article.
+     *
+     * @param articleId The ID of the article
+     * @return The number of comments of the article
      * @throws RuntimeException if article is not found
      */
-    public List<CommentDTO> getCommentsByArticle(Long articleId) {
-        // Retrieve the article associated with the comments
-        Article article = articleRepository.findById(articleId)
-                .orElseThrow(() -> new RuntimeException("Article not found!"));
-
-        // Retrieve all comments associated with the article
-        List<Comment> comments = commentRepository.findByArticle(article);
-        
-        // Convert all comments to their DTO representations
-        return comments.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public long countCommentsByArticle(Long articleId) {
+        long count = commentRepository.countByArticleId(articleId);
+
+        // Only an article without comments needs to be checked
+        if (count == 0 && !articleRepository.existsById(articleId)) {
+            throw new RuntimeException("Article not found!");
+        }
+        return count;
     }
 
     /**
@@ -106,5 +162,8 @@ public class CommentService {
                 .orElseThrow(() -> new RuntimeException("Comment not found!"));
         // Delete the comment from the database
         commentRepository.delete(comment);
+
+        // Evict the article from the cache so its comments are reloaded
+        articleDetailCache.invalidate(comment.getArticle().getId());
     }
 }
@@ -0,0 +1,262 @@
+package com.openclassrooms.mddapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.dto.CommentDTO;
+import com.openclassrooms.mddapi.dto.CursorPageDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live comments of articles, broadcast to the WebSocket sessions reading them.
+ *
+ * Committed comments are not sent one by one: they are collected per article, and every {@code flushInterval}
+ * the comments of each article are encoded once into a single frame, a {@link CursorPageDTO} without cursor,
+ * queued on every session of the article. A burst of comments thus costs a few frames per session.
+ * Frames are written by a {@link StreamSender} on its own pool of {@code senderThreads} threads. A session whose
+ * pending frames exceed {@code bufferSizeLimit} bytes, or whose send lasts longer than {@code sendTimeLimit},
+ * is closed, and sessions idle for {@code heartbeatInterval} are pinged.
+ *
+ * A session may catch up from the last comment it knows: the comments following it are queued in a first frame,
+ * whose cursor, when present, fetches the rest from {@code GET /api/comments/article/{articleId}}.
+ * Comments committed while catching up may be sent twice, readers ignore the IDs they already have.
+ * Comments only reach the sessions connected to this instance.
+ * Publishes the {@code comments.live.sessions} gauge and the {@code comments.live.evictions} counter.
+ */
+@Component
+public class CommentStreamHub implements SmartLifecycle {
+
+    private static final String LIVE_SESSION = CommentStreamHub.class.getName() + ".session";
+
+    private static final PingMessage PING = new PingMessage();
+
+    private static final Comparator<CommentDTO> COMMENT_ORDER =
+            Comparator.comparing(CommentDTO::getCreatedAt).thenComparing(CommentDTO::getId);
+
+    private final CommentService commentService;
+    private final ObjectMapper objectMapper;
+    private final int maxSessions;
+    private final Duration flushInterval;
+    private final StreamSender<WebSocketMessage<?>, LiveSession> sender;
+
+    // Sessions reading each article; sets are only changed within compute() so that empty ones can be dropped
+    private final Map<Long, Set<LiveSession>> sessionsByArticle = new ConcurrentHashMap<>();
+    // Comments committed since the last flush, per article
+    private final Map<Long, List<CommentDTO>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    /**
+     * @param commentService Service the catch-up comments are read from
+     * @param objectMapper Mapper used to encode frames
+     * @param maxSessions Maximum number of sessions open at once
+     * @param flushInterval Time during which comments are collected into one frame
+     * @param heartbeatInterval Time without frames after which a session is pinged
+     * @param sendTimeLimit Maximum time a frame may take to be sent before the session is closed
+     * @param bufferSizeLimit Maximum size of the frames waiting to be sent to a session before it is closed, in bytes
+     * @param senderThreads Number of threads writing the frames to the sessions
+     * @param meterRegistry Registry the live comment metrics are published to
+     */
+    public CommentStreamHub(CommentService commentService, ObjectMapper objectMapper,
+                            @Value("${mddapi.comments.live.max-sessions:30000}") int maxSessions,
+                            @Value("${mddapi.comments.live.flush-interval:200ms}") Duration flushInterval,
+                            @Value("${mddapi.comments.live.heartbeat-interval:30s}") Duration heartbeatInterval,
+                            @Value("${mddapi.comments.live.send-time-limit:10s}") Duration sendTimeLimit,
+                            @Value("${mddapi.comments.live.buffer-size-limit:524288}") int bufferSizeLimit,
+                            @Value("${mddapi.comments.live.sender-threads:8}") int senderThreads,
+                            MeterRegistry meterRegistry) {
+        this.commentService = commentService;
+        this.objectMapper = objectMapper;
+        this.maxSessions = maxSessions;
+        this.flushInterval = flushInterval;
+        Counter evictions = Counter.builder("comments.live.evictions")
+                .description("Number of live comment sessions closed because their client could not keep up")
+                .register(meterRegistry);
+        this.sender = new StreamSender<>("comment-stream", maxSessions, WebSocketMessage::getPayloadLength,
+                bufferSizeLimit, sendTimeLimit, heartbeatInterval, PING, senderThreads, evictions, this::forget);
+        Gauge.builder("comments.live.sessions", sessions, AtomicInteger::get)
+                .description("Number of open live comment sessions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts broadcasting the comments of an article to a session, after sending the comments it missed.
+     *
+     * @param articleId The ID of the article
+     * @param afterCommentId The ID of the last comment known by the reader, or null to skip the catch-up
+     * @param session The WebSocket session of the reader
+     * @throws IOException if the session cannot be closed
+     */
+    public void subscribe(Long articleId, Long afterCommentId, WebSocketSession session) throws IOException {
+        if (sessions.incrementAndGet() > maxSessions) {
+            sessions.decrementAndGet();
+            session.close(CloseStatus.SERVICE_OVERLOAD);
+            return;
+        }
+
+        // Register the session first, so that no comment committed during the catch-up is missed
+        LiveSession live = new LiveSession(articleId, session);
+        session.getAttributes().put(LIVE_SESSION, live);
+        sessionsByArticle.compute(articleId, (id, articleSessions) -> {
+            Set<LiveSession> updated = articleSessions == null ? ConcurrentHashMap.newKeySet() : articleSessions;
+            updated.add(live);
+            return updated;
+        });
+        sender.open(live);
+
+        if (afterCommentId != null) {
+            CursorPageDTO<CommentDTO> missed;
+            try {
+                missed = commentService.getCommentsAfter(articleId, afterCommentId, CommentService.MAX_PAGE_SIZE);
+            } catch (IllegalArgumentException e) {
+                sender.remove(live);
+                sender.close(live, () -> session.close(CloseStatus.BAD_DATA.withReason(e.getMessage())), true);
+                return;
+            }
+            sender.send(live, encode(missed));
+        }
+    }
+
+    /**
+     * Stops broadcasting comments to a closed session.
+     *
+     * @param session The closed WebSocket session
+     */
+    public void unsubscribe(WebSocketSession session) {
+        Object live = session.getAttributes().remove(LIVE_SESSION);
+        if (live != null) {
+            sender.remove((LiveSession) live);
+        }
+    }
+
+    /**
+     * Collects a committed comment into the next frame of its article, if the article has live readers.
+     *
+     * @param event The addition event of the comment
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentAdded(CommentAddedEvent event) {
+        CommentDTO comment = event.comment();
+        if (!sessionsByArticle.containsKey(comment.getArticleId())) {
+            return;
+        }
+        pending.compute(comment.getArticleId(), (id, comments) -> {
+            List<CommentDTO> updated = comments == null ? new ArrayList<>() : comments;
+            updated.add(comment);
+            return updated;
+        });
+    }
+
+    /**
+     * Counts the open sessions.
+     *
+     * @return The number of open sessions
+     */
+    public int countSessions() {
+        return sessions.get();
+    }
+
+    @Override
+    public synchronized void start() {
+        sender.start();
+        sender.schedule(this::flush, flushInterval);
+    }
+
+    /**
+     * Sends the collected comments, then closes every session, so that readers reconnect to another instance.
+     */
+    @Override
+    public synchronized void stop() {
+        flush();
+        sender.stop(live -> sender.close(live, () -> live.session.close(CloseStatus.GOING_AWAY), false));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return sender.isRunning();
+    }
+
+    /**
+     * Queues one frame per article with the comments committed since the last flush.
+     */
+    private void flush() {
+        for (Long articleId : pending.keySet()) {
+            List<CommentDTO> comments = pending.remove(articleId);
+            Set<LiveSession> articleSessions = sessionsByArticle.get(articleId);
+            if (comments == null || articleSessions == null) {
+                continue;
+            }
+            comments.sort(COMMENT_ORDER);
+            TextMessage frame = encode(new CursorPageDTO<>(comments, null));
+            articleSessions.forEach(live -> sender.send(live, frame));
+        }
+    }
+
+    /**
+     * Forgets a session removed from the sender.
+     */
+    private void forget(LiveSession live) {
+        sessionsByArticle.computeIfPresent(live.articleId, (id, articleSessions) -> {
+            articleSessions.remove(live);
+            return articleSessions.isEmpty() ? null : articleSessions;
+        });
+        sessions.decrementAndGet();
+    }
+
+    private TextMessage encode(CursorPageDTO<CommentDTO> comments) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsBytes(comments));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Open session reading the comments of an article.
+     */
+    private static final class LiveSession extends StreamSender.Outbox<WebSocketMessage<?>> {
+
+        private final Long articleId;
+        private final WebSocketSession session;
+
+        private LiveSession(Long articleId, WebSocketSession session) {
+            this.articleId = articleId;
+            this.session = session;
+        }
+
+        @Override
+        protected void write(WebSocketMessage<?> message) throws IOException {
+            session.sendMessage(message);
+        }
+
+        @Override
+        protected void closeEvicted() throws IOException {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+
+        @Override
+        public String toString() {
+            return "Live comment session " + session.getId();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.openclassrooms.mddapi.service;
+
+import com.openclassrooms.mddapi.repository.UserRepository;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service resolving the authenticated user of the current request.
+ * The user is read from the claims of their JWT, without querying the users table;
+ * only tokens issued before these claims existed fall back to a lookup by email.
+ */
+@Service
+public class CurrentUserService {
+
+    private final UserRepository userRepository;
+
+    /**
+     * Constructor injection for required dependencies.
+     *
+     * @param userRepository Repository for managing users, used for tokens without user claims
+     */
+    public CurrentUserService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Retrieves the authenticated user of the current request.
+     *
+     * @return The authenticated user
+     * @throws RuntimeException if no user is authenticated or the user is not found
+     */
+    public AuthenticatedUser getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null) {
+            throw new RuntimeException("User not authenticated!");
+        }
+
+        if (authentication.getPrincipal() instanceof Jwt jwt) {
+            AuthenticatedUser user = AuthenticatedUser.fromJwt(jwt);
+            if (user != null) {
+                return user;
+            }
+        }
+
+        // Tokens without user claims: look the user up by the email in their subject
+        return userRepository.findByEmail(authentication.getName())
+                .map(user -> new AuthenticatedUser(user.getId(), user.getEmail(), user.getUsername()))
+                .orElseThrow(() -> new RuntimeException("User not found!"));
+    }
+}
@@ -1,14 +1,20 @@
 package com.openclassrooms.mddapi.service;
 
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import com.openclassrooms.mddapi.cache.CredentialCache;
+import com.openclassrooms.mddapi.repository.UserCredentials;
 import com.openclassrooms.mddapi.repository.UserRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Custom implementation of the UserDetailsService interface to load user-specific data.
@@ -17,44 +23,68 @@ import java.util.Optional;
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    /**
+     * Name of the timer measuring credential lookups, tagged with their outcome.
+     */
+    public static final String LOOKUP_TIMER = "auth.credentials.lookup";
+
     private final UserRepository userRepository;
+    private final CredentialCache credentialCache;
+    private final Timer foundTimer;
+    private final Timer notFoundTimer;
 
     /**
      * Constructor to inject the UserRepository dependency.
      * @param userRepository the repository used to fetch user data
+     * @param credentialCache the short-lived cache of credential lookups
+     * @param meterRegistry the registry lookup latencies are published to
      */
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, CredentialCache credentialCache, MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
+        this.credentialCache = credentialCache;
+        this.foundTimer = lookupTimer(meterRegistry, "found");
+        this.notFoundTimer = lookupTimer(meterRegistry, "not_found");
     }
 
     /**
      * Loads a user's details by their email address or username.
+     * Both columns are matched by a single query, whose result is briefly cached.
      * @param emailOrUsername the email address or username of the user to load
      * @return a UserDetails object containing the user's information
      * @throws UsernameNotFoundException if the user is not found
      */
     @Override
     public UserDetails loadUserByUsername(String emailOrUsername) throws UsernameNotFoundException {
-        // Try to find the user by email first
-        Optional<com.openclassrooms.mddapi.model.User> userByEmail = userRepository.findByEmail(emailOrUsername);
-        
-        // If not found by email, try to find by username
-        Optional<com.openclassrooms.mddapi.model.User> userByUsername = userRepository.findByUsername(emailOrUsername);
-        
-        // Get the user entity from one of the results
-        com.openclassrooms.mddapi.model.User userEntity = userByEmail.orElseGet(() -> 
-            userByUsername.orElseThrow(() -> 
-                new UsernameNotFoundException("User not found with email or username: " + emailOrUsername)
-            )
+        long start = System.nanoTime();
+
+        // Find the user by email or username, the email match first
+        Optional<UserCredentials> credentials = credentialCache.get(emailOrUsername, login -> {
+            List<UserCredentials> matches = userRepository.findCredentialsByEmailOrUsername(login);
+            return matches.stream().findFirst();
+        });
+
+        (credentials.isPresent() ? foundTimer : notFoundTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        UserCredentials user = credentials.orElseThrow(() ->
+            new UsernameNotFoundException("User not found with email or username: " + emailOrUsername)
         );
 
-        System.out.println("User found: " + userEntity.getEmail());
+        // Build and return a new UserDetails object for Spring Security, using the email as the username.
+        // A new instance is needed on every call, since Spring Security erases its password after authentication.
+        return new AuthenticatedUserDetails(
+            user.id(),
+            user.email(),
+            user.username(),
+            user.password(), // Use the encoded password
+            List.of() // Add roles or authorities if applicable
+        );
+    }
 
-        // Build and return a UserDetails object for Spring Security
-        return User.builder()
-            .username(userEntity.getEmail()) // Use email as the username
-            .password(userEntity.getPassword()) // Use the encoded password
-            .roles() // Add roles or authorities if applicable
-            .build();
+    private static Timer lookupTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder(LOOKUP_TIMER)
+            .description("Time to look up the credentials of a login, cache included")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
     }
 }
@@ -37,17 +37,22 @@ public class JwtService {
         Instant now = Instant.now(); // Current time for token generation
 
         // Define the JWT claims
-        JwtClaimsSet claims = JwtClaimsSet.builder()
+        JwtClaimsSet.Builder claims = JwtClaimsSet.builder()
             .issuer("self") // The issuer of the token
             .issuedAt(now) // Token issuance time
             .expiresAt(now.plus(1, ChronoUnit.DAYS)) // Token expiration time (1 day)
-            .subject(authentication.getName()) // The subject of the token (username)
-            .build();
+            .subject(authentication.getName()); // The subject of the token (email)
+
+        // Embed the user ID and username, so requests can identify the user without querying the database
+        if (authentication.getPrincipal() instanceof AuthenticatedUserDetails userDetails) {
+            claims.claim(AuthenticatedUser.CLAIM_USER_ID, userDetails.getId())
+                .claim(AuthenticatedUser.CLAIM_USERNAME, userDetails.getDisplayUsername());
+        }
 
         // Define JWT header and combine with claimsisTokenValid
         JwtEncoderParameters jwtEncoderParameters = JwtEncoderParameters.from(
             JwsHeader.with(MacAlgorithm.HS256).build(), // Use HS256 signing algorithm
-            claims
+            claims.build()
         );
 
         // Encode and return the JWT token
@@ -0,0 +1,71 @@
+package com.openclassrooms.mddapi.service;
+
+import com.openclassrooms.mddapi.dto.CursorPageDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position in a list ordered by {@code (createdAt, id)}.
+ * Encoded as an opaque URL-safe string so clients never depend on its content.
+ *
+ * @param createdAt creation timestamp of the last item returned
+ * @param id        ID of the last item returned, used as a tie-breaker
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Encodes the cursor into an opaque string.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds a page from rows fetched with one extra row, whose presence tells that a next page exists.
+     *
+     * @param rows the rows of the page, plus the first row of the next page if any
+     * @param pageSize the size of the page
+     * @param position the position of a row, used to build the cursor of the next page from the last row
+     * @param <T> the type of the rows
+     * @return the page, with the cursor of the next page or null for the last page
+     */
+    public static <T> CursorPageDTO<T> page(List<T> rows, int pageSize, Function<T, KeysetCursor> position) {
+        if (rows.size() <= pageSize) {
+            return new CursorPageDTO<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new CursorPageDTO<>(items, position.apply(items.get(pageSize - 1)).encode());
+    }
+
+    /**
+     * Decodes a cursor previously produced by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor!");
+            }
+            return new KeysetCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor!", e);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.openclassrooms.mddapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Sends the messages of a hub's live streams from bounded outboxes, on the hub's own pool of {@code threads} threads.
+ *
+ * Each stream has an outbox of pending messages, written by one task at a time, so that slow clients never hold
+ * threads of the shared application executor. A stream is too slow to keep up, and is evicted, once its pending
+ * messages weigh more than {@code bufferLimit} or one of its sends lasts longer than {@code sendTimeLimit}, checked
+ * while the send is still in progress. Streams idle for {@code heartbeatInterval} are sent a heartbeat by a few tasks
+ * of the pool, each handling its share of them, so that proxies keep them open and closed connections are detected.
+ *
+ * Sends are blocking: a stream closed during a send is closed by its sender as soon as the send returns,
+ * at the latest when the container's write timeout expires. Meanwhile the stream receives nothing more.
+ *
+ * @param <M> The type of the messages
+ * @param <O> The type of the outboxes, which write the messages to their client
+ */
+public class StreamSender<M, O extends StreamSender.Outbox<M>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamSender.class);
+
+    private final String name;
+    private final int maxStreams;
+    private final ToIntFunction<M> weigher;
+    private final int bufferLimit;
+    private final Duration sendTimeLimit;
+    private final Duration heartbeatInterval;
+    private final M heartbeat;
+    private final int threads;
+    private final Counter evictions;
+    private final Consumer<O> onRemoved;
+
+    private final Set<O> outboxes = ConcurrentHashMap.newKeySet();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile ExecutorService senders;
+
+    /**
+     * @param name Prefix of the names of the sender threads
+     * @param maxStreams Maximum number of streams open at once
+     * @param weigher Weight of a message in an outbox, such as 1 or its size in bytes
+     * @param bufferLimit Maximum weight of the messages waiting to be sent to a stream before it is evicted
+     * @param sendTimeLimit Maximum time a send may last before the stream is evicted
+     * @param heartbeatInterval Time without messages after which a stream is sent a heartbeat
+     * @param heartbeat The heartbeat message
+     * @param threads Number of threads sending the messages
+     * @param evictions Counter of the evicted streams
+     * @param onRemoved Called once for each removed stream, so that its hub forgets it
+     */
+    public StreamSender(String name, int maxStreams, ToIntFunction<M> weigher, int bufferLimit, Duration sendTimeLimit,
+                        Duration heartbeatInterval, M heartbeat, int threads, Counter evictions, Consumer<O> onRemoved) {
+        this.name = name;
+        this.maxStreams = maxStreams;
+        this.weigher = weigher;
+        this.bufferLimit = bufferLimit;
+        this.sendTimeLimit = sendTimeLimit;
+        this.heartbeatInterval = heartbeatInterval;
+        this.heartbeat = heartbeat;
+        this.threads = threads;
+        this.evictions = evictions;
+        this.onRemoved = onRemoved;
+    }
+
+    /**
+     * Starts the senders, the heartbeats and the checks of slow sends.
+     */
+    public synchronized void start() {
+        // Each stream has at most one task queued or running, the heartbeats at most one per sender
+        AtomicInteger threadCount = new AtomicInteger();
+        senders = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxStreams + threads), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-sender-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        schedule(this::sendHeartbeats, heartbeatInterval);
+        schedule(this::evictSlowStreams, Duration.ofMillis(Math.max(sendTimeLimit.toMillis() / 2, 1)));
+    }
+
+    /**
+     * Runs a task periodically on the scheduler of the sender, until it is stopped.
+     *
+     * @param task The task, such as a flush of the hub
+     * @param interval Time between two runs of the task
+     */
+    public void schedule(Runnable task, Duration interval) {
+        scheduler.scheduleWithFixedDelay(task, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the scheduled tasks and closes every open stream, then stops the senders once they are done.
+     *
+     * @param closing Closes an open stream, usually with {@link #close}
+     */
+    public synchronized void stop(Consumer<O> closing) {
+        ScheduledExecutorService stopped = scheduler;
+        scheduler = null;
+        if (stopped != null) {
+            stopped.shutdownNow();
+        }
+        List.copyOf(outboxes).forEach(closing);
+        ExecutorService stoppedSenders = senders;
+        senders = null;
+        if (stoppedSenders != null) {
+            stoppedSenders.shutdown();
+        }
+    }
+
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Registers the outbox of a new stream, for its heartbeats and the checks of its sends.
+     *
+     * @param outbox The outbox of the stream
+     */
+    public void open(O outbox) {
+        outboxes.add(outbox);
+        if (outbox.removed.get()) {
+            // Removed while it was being opened
+            outboxes.remove(outbox);
+        }
+    }
+
+    /**
+     * Queues a message on a stream, and hands the stream to a sender unless one is already writing it.
+     *
+     * @param outbox The outbox of the stream
+     * @param message The message
+     */
+    public void send(O outbox, M message) {
+        if (outbox.closer.get() != null) {
+            return;
+        }
+        if (outbox.pendingWeight.addAndGet(weigher.applyAsInt(message)) > bufferLimit) {
+            // The client does not read fast enough: evict its stream rather than buffering without bound
+            evict(outbox, "its pending messages exceed " + bufferLimit);
+            return;
+        }
+        outbox.pending.add(message);
+        if (outbox.sending.compareAndSet(false, true)) {
+            execute(outbox);
+        }
+    }
+
+    /**
+     * Closes a stream: at once if no send is in progress or pending,
+     * otherwise by its sender once the pending messages, unless discarded, are sent.
+     * Only the first close of a stream is applied.
+     *
+     * @param outbox The outbox of the stream
+     * @param closer Closes the client of the stream
+     * @param discardPending Whether the pending messages are dropped rather than sent
+     */
+    public void close(O outbox, Closeable closer, boolean discardPending) {
+        if (!outbox.closer.compareAndSet(null, closer)) {
+            return;
+        }
+        if (discardPending) {
+            outbox.pending.clear();
+            outbox.pendingWeight.set(0);
+        }
+        if (outbox.sending.compareAndSet(false, true)) {
+            if (outbox.pending.isEmpty()) {
+                closeNow(outbox);
+            } else {
+                execute(outbox);
+            }
+        }
+    }
+
+    /**
+     * Forgets a stream, which receives nothing more.
+     *
+     * @param outbox The outbox of the stream
+     * @return true if the stream was open, false if it was already removed
+     */
+    public boolean remove(O outbox) {
+        if (!outbox.removed.compareAndSet(false, true)) {
+            return false;
+        }
+        outboxes.remove(outbox);
+        onRemoved.accept(outbox);
+        return true;
+    }
+
+    /**
+     * Sends a heartbeat to the streams that received nothing during the last {@code heartbeatInterval},
+     * split between a few tasks rather than one task per stream.
+     */
+    private void sendHeartbeats() {
+        long idleSince = System.nanoTime() - heartbeatInterval.toNanos();
+        List<O> idle = new ArrayList<>();
+        outboxes.forEach(outbox -> {
+            if (outbox.lastSentAt - idleSince <= 0 && outbox.pending.isEmpty()) {
+                idle.add(outbox);
+            }
+        });
+        ExecutorService running = senders;
+        if (running == null || idle.isEmpty()) {
+            return;
+        }
+
+        int share = (idle.size() + threads - 1) / threads;
+        for (int from = 0; from < idle.size(); from += share) {
+            List<O> idleShare = idle.subList(from, Math.min(from + share, idle.size()));
+            try {
+                running.execute(() -> idleShare.forEach(this::sendHeartbeat));
+            } catch (RejectedExecutionException e) {
+                logger.debug("Heartbeats of {} skipped, the senders are stopped or overloaded", name);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends a heartbeat to a stream on the calling sender, unless it is being written to.
+     */
+    private void sendHeartbeat(O outbox) {
+        if (outbox.closer.get() == null && outbox.sending.compareAndSet(false, true)) {
+            outbox.pendingWeight.addAndGet(weigher.applyAsInt(heartbeat));
+            outbox.pending.add(heartbeat);
+            drain(outbox);
+        }
+    }
+
+    /**
+     * Evicts the streams whose current send has lasted longer than {@code sendTimeLimit}.
+     */
+    private void evictSlowStreams() {
+        long now = System.nanoTime();
+        outboxes.forEach(outbox -> {
+            long sendStartedAt = outbox.sendStartedAt;
+            if (sendStartedAt != 0 && now - sendStartedAt > sendTimeLimit.toNanos()) {
+                evict(outbox, "a send lasted more than " + sendTimeLimit);
+            }
+        });
+    }
+
+    /**
+     * Closes a stream that cannot keep up.
+     */
+    private void evict(O outbox, String reason) {
+        if (remove(outbox)) {
+            evictions.increment();
+            logger.debug("{} evicted, {}", outbox, reason);
+        }
+        close(outbox, outbox::closeEvicted, true);
+    }
+
+    /**
+     * Hands a stream taken for sending to a sender.
+     */
+    private void execute(O outbox) {
+        ExecutorService running = senders;
+        if (running == null) {
+            outbox.sending.set(false);
+            return;
+        }
+        try {
+            running.execute(() -> drain(outbox));
+        } catch (RejectedExecutionException e) {
+            outbox.sending.set(false);
+            evict(outbox, "the senders are stopped or overloaded");
+        }
+    }
+
+    /**
+     * Writes the pending messages of a stream, run by a single sender at a time per stream.
+     */
+    private void drain(O outbox) {
+        try {
+            do {
+                M message;
+                while ((message = outbox.pending.poll()) != null) {
+                    outbox.pendingWeight.addAndGet(-weigher.applyAsInt(message));
+                    outbox.sendStartedAt = System.nanoTime();
+                    try {
+                        outbox.write(message);
+                    } finally {
+                        outbox.sendStartedAt = 0;
+                    }
+                    outbox.lastSentAt = System.nanoTime();
+                }
+                if (outbox.closer.get() != null) {
+                    closeNow(outbox);
+                    return;
+                }
+                outbox.sending.set(false);
+                // Retake the stream if a message was queued, or the stream closed, after the outbox was found empty
+            } while ((outbox.closer.get() != null || !outbox.pending.isEmpty()) && outbox.sending.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone, the container closes the stream
+            remove(outbox);
+            outbox.closer.compareAndSet(null, () -> { });
+            outbox.pending.clear();
+            logger.debug("{} could not be written", outbox, e);
+        }
+    }
+
+    private void closeNow(O outbox) {
+        outbox.pending.clear();
+        try {
+            outbox.closer.get().close();
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("{} could not be closed", outbox, e);
+        }
+    }
+
+    /**
+     * Open stream of a client, with the messages waiting to be sent to it.
+     *
+     * @param <M> The type of the messages
+     */
+    public abstract static class Outbox<M> {
+
+        // State of the stream, only used by the sender
+        final Queue<M> pending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pendingWeight = new AtomicInteger();
+        final AtomicBoolean sending = new AtomicBoolean();
+        final AtomicBoolean removed = new AtomicBoolean();
+        // Closes the client once the pending messages are sent, null while open
+        final AtomicReference<Closeable> closer = new AtomicReference<>();
+        // Start of the send in progress, 0 when not sending
+        volatile long sendStartedAt;
+        volatile long lastSentAt = System.nanoTime();
+
+        /**
+         * Writes a message to the client, blocking until it is written.
+         *
+         * @param message The message
+         * @throws IOException if the client is gone
+         */
+        protected abstract void write(M message) throws IOException;
+
+        /**
+         * Closes the client of an evicted stream.
+         *
+         * @throws IOException if the client cannot be closed
+         */
+        protected abstract void closeEvicted() throws IOException;
+    }
+}
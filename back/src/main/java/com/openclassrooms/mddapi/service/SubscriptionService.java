@@ -1,29 +1,45 @@
 package com.openclassrooms.mddapi.service;
 
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import com.openclassrooms.mddapi.dto.SubscriptionResultDTO;
+import com.openclassrooms.mddapi.dto.SubscriptionResultDTO.Status;
 import com.openclassrooms.mddapi.dto.ThemeWithSubscriptionDTO;
 import com.openclassrooms.mddapi.model.Subscription;
 import com.openclassrooms.mddapi.model.User;
 import com.openclassrooms.mddapi.model.Theme;
+import com.openclassrooms.mddapi.repository.SubscriptionBatchRepository;
 import com.openclassrooms.mddapi.repository.SubscriptionRepository;
 import com.openclassrooms.mddapi.repository.UserRepository;
 import com.openclassrooms.mddapi.repository.ThemeRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("mddapi.service")
 public class SubscriptionService {
 
     private final SubscriptionRepository subscriptionRepository;
     private final UserRepository userRepository;
     private final ThemeRepository themeRepository;
+    private final SubscriptionBatchRepository subscriptionBatchRepository;
+    private final SubscriptionIndex subscriptionIndex;
 
-    public SubscriptionService(SubscriptionRepository subscriptionRepository, UserRepository userRepository, ThemeRepository themeRepository) {
+    public SubscriptionService(SubscriptionRepository subscriptionRepository, UserRepository userRepository, ThemeRepository themeRepository, SubscriptionBatchRepository subscriptionBatchRepository, SubscriptionIndex subscriptionIndex) {
         this.subscriptionRepository = subscriptionRepository;
+        this.subscriptionBatchRepository = subscriptionBatchRepository;
         this.userRepository = userRepository;
         this.themeRepository = themeRepository;
+        this.subscriptionIndex = subscriptionIndex;
     }
 
     /**
@@ -36,7 +52,8 @@ public class SubscriptionService {
         Theme theme = themeRepository.findById(themeId)
                 .orElseThrow(() -> new RuntimeException("Thème non trouvé !"));
 
-        if (subscriptionRepository.findByUserAndTheme(user, theme).isPresent()) {
+        // Vérification en mémoire, sans requête
+        if (subscriptionIndex.isSubscribed(userId, themeId)) {
             throw new RuntimeException("L'utilisateur est déjà abonné à ce thème !");
         }
 
@@ -45,28 +62,117 @@ public class SubscriptionService {
         subscription.setTheme(theme);
         subscription.setCreatedAt(LocalDateTime.now());
 
-        return subscriptionRepository.save(subscription);
+        Subscription savedSubscription = subscriptionRepository.save(subscription);
+        subscriptionIndex.add(userId, themeId);
+        return savedSubscription;
     }
 
     /**
      * Se désabonner d'un thème.
      */
     public void unsubscribe(Long userId, Long themeId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé !"));
+        if (userRepository.findById(userId).isEmpty()) {
+            throw new RuntimeException("Utilisateur non trouvé !");
+        }
 
-        Theme theme = themeRepository.findById(themeId)
-                .orElseThrow(() -> new RuntimeException("Thème non trouvé !"));
+        if (themeRepository.findById(themeId).isEmpty()) {
+            throw new RuntimeException("Thème non trouvé !");
+        }
 
-        Subscription subscription = subscriptionRepository.findByUserAndTheme(user, theme)
-                .orElseThrow(() -> new RuntimeException("L'utilisateur n'est pas abonné à ce thème !"));
+        // Vérification en mémoire, puis suppression en une seule requête
+        if (!subscriptionIndex.isSubscribed(userId, themeId)
+                || subscriptionRepository.deleteByUserIdAndThemeId(userId, themeId) == 0) {
+            throw new RuntimeException("L'utilisateur n'est pas abonné à ce thème !");
+        }
 
-        subscriptionRepository.delete(subscription);
+        subscriptionIndex.remove(userId, themeId);
     }
 
     /**
-     * Récupérer tous les thèmes auxquels un utilisateur est abonné.
+     * S'abonner à plusieurs thèmes en une seule transaction.
+     * Les thèmes sont vérifiés en une requête et les abonnements insérés en un seul batch JDBC.
      */
+    @Transactional
+    public List<SubscriptionResultDTO> subscribeAll(Long userId, List<Long> themeIds) {
+        if (userRepository.findById(userId).isEmpty()) {
+            throw new RuntimeException("Utilisateur non trouvé !");
+        }
+
+        Set<Long> requestedIds = new LinkedHashSet<>(themeIds);
+        Set<Long> existingIds = themeRepository.findExistingIds(requestedIds);
+
+        List<SubscriptionResultDTO> results = new ArrayList<>();
+        List<Long> toInsert = new ArrayList<>();
+        for (Long themeId : requestedIds) {
+            if (!existingIds.contains(themeId)) {
+                results.add(new SubscriptionResultDTO(themeId, Status.THEME_NOT_FOUND));
+            } else if (subscriptionIndex.isSubscribed(userId, themeId)) {
+                results.add(new SubscriptionResultDTO(themeId, Status.ALREADY_SUBSCRIBED));
+            } else {
+                results.add(new SubscriptionResultDTO(themeId, Status.SUBSCRIBED));
+                toInsert.add(themeId);
+            }
+        }
+
+        if (!toInsert.isEmpty()) {
+            subscriptionBatchRepository.insertAll(userId, toInsert, LocalDateTime.now());
+            afterCommit(() -> toInsert.forEach(themeId -> subscriptionIndex.add(userId, themeId)));
+        }
+        return results;
+    }
+
+    /**
+     * Se désabonner de plusieurs thèmes en une seule transaction.
+     * Les thèmes sont vérifiés en une requête et les abonnements supprimés en un seul batch JDBC.
+     */
+    @Transactional
+    public List<SubscriptionResultDTO> unsubscribeAll(Long userId, List<Long> themeIds) {
+        if (userRepository.findById(userId).isEmpty()) {
+            throw new RuntimeException("Utilisateur non trouvé !");
+        }
+
+        Set<Long> requestedIds = new LinkedHashSet<>(themeIds);
+        Set<Long> existingIds = themeRepository.findExistingIds(requestedIds);
+
+        List<SubscriptionResultDTO> results = new ArrayList<>();
+        List<SubscriptionResultDTO> toDelete = new ArrayList<>();
+        for (Long themeId : requestedIds) {
+            if (!existingIds.contains(themeId)) {
+                results.add(new SubscriptionResultDTO(themeId, Status.THEME_NOT_FOUND));
+            } else if (!subscriptionIndex.isSubscribed(userId, themeId)) {
+                results.add(new SubscriptionResultDTO(themeId, Status.NOT_SUBSCRIBED));
+            } else {
+                SubscriptionResultDTO result = new SubscriptionResultDTO(themeId, Status.UNSUBSCRIBED);
+                results.add(result);
+                toDelete.add(result);
+            }
+        }
+
+        if (!toDelete.isEmpty()) {
+            List<Long> deleteIds = toDelete.stream().map(SubscriptionResultDTO::getThemeId).collect(Collectors.toList());
+            boolean[] deleted = subscriptionBatchRepository.deleteAll(userId, deleteIds);
+            for (int i = 0; i < deleted.length; i++) {
+                if (!deleted[i]) {
+                    toDelete.get(i).setStatus(Status.NOT_SUBSCRIBED);
+                }
+            }
+            afterCommit(() -> deleteIds.forEach(themeId -> subscriptionIndex.remove(userId, themeId)));
+        }
+        return results;
+    }
+
+    /**
+     * Exécuter une mise à jour de l'index une fois la transaction validée, pour ne jamais y refléter un rollback.
+     */
+    private void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     /**
      * Récupérer tous les thèmes auxquels un utilisateur est abonné (au format ThemeWithSubscriptionDTO).
      */
@@ -1,14 +1,16 @@
 package com.openclassrooms.mddapi.service;
 
+import com.openclassrooms.mddapi.cache.ArticleDetailCache;
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import com.openclassrooms.mddapi.cache.ThemeCatalogCache;
 import com.openclassrooms.mddapi.dto.ThemeDTO;
 import com.openclassrooms.mddapi.dto.ThemeWithSubscriptionDTO;
 import com.openclassrooms.mddapi.model.Theme;
-import com.openclassrooms.mddapi.model.User;
+import com.openclassrooms.mddapi.repository.ContentVersion;
 import com.openclassrooms.mddapi.repository.SubscriptionRepository;
 import com.openclassrooms.mddapi.repository.ThemeRepository;
-import com.openclassrooms.mddapi.repository.UserRepository;
 
-import org.springframework.security.core.context.SecurityContextHolder;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -20,23 +22,33 @@ import java.util.stream.Collectors;
  * Handles operations related to creating, retrieving, updating, and deleting themes.
  */
 @Service
+@Timed("mddapi.service")
 public class ThemeService {
 
     private final ThemeRepository themeRepository;
-    private final UserRepository userRepository;
     private final SubscriptionRepository subscriptionRepository;
+    private final ArticleDetailCache articleDetailCache;
+    private final ThemeCatalogCache themeCatalogCache;
+    private final SubscriptionIndex subscriptionIndex;
+    private final CurrentUserService currentUserService;
 
     /**
      * Constructor injection for required dependencies.
      *
      * @param themeRepository Repository for managing themes
-     * @param userRepository Repository for managing users
      * @param subscriptionRepository Repository for managing subscriptions
+     * @param articleDetailCache Cache of assembled article details, which embed theme titles
+     * @param themeCatalogCache Cache of the theme catalog
+     * @param subscriptionIndex In-memory index of subscriptions
+     * @param currentUserService Service resolving the authenticated user from their token
      */
-    public ThemeService(ThemeRepository themeRepository, UserRepository userRepository, SubscriptionRepository subscriptionRepository) {
+    public ThemeService(ThemeRepository themeRepository, SubscriptionRepository subscriptionRepository, ArticleDetailCache articleDetailCache, ThemeCatalogCache themeCatalogCache, SubscriptionIndex subscriptionIndex, CurrentUserService currentUserService) {
         this.themeRepository = themeRepository;
-        this.userRepository = userRepository;
         this.subscriptionRepository = subscriptionRepository;
+        this.articleDetailCache = articleDetailCache;
+        this.themeCatalogCache = themeCatalogCache;
+        this.subscriptionIndex = subscriptionIndex;
+        this.currentUserService = currentUserService;
     }
 
     /**
@@ -60,29 +72,46 @@ public class ThemeService {
         theme.setUpdatedAt(LocalDateTime.now());
 
         // Save the theme to the database
-        return themeRepository.save(theme);
+        Theme savedTheme = themeRepository.save(theme);
+
+        // The catalog now has one more theme
+        themeCatalogCache.invalidate();
+        return savedTheme;
     }
 
     /**
      * Retrieves all themes with subscription status for the current user.
+     * Themes come from the catalog cache and the subscription status from the in-memory subscription index.
      * 
      * @return List of themes with their subscription status
      * @throws RuntimeException if the current user is not found
      */
     public List<ThemeWithSubscriptionDTO> getAllThemesWithSubscription() {
-        // Get the email of the current user
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        
-        // Find the user by email
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found!"));
+        // Get the current user from their token
+        Long userId = currentUserService.getCurrentUser().id();
 
         // Retrieve all themes and map them to ThemeWithSubscriptionDTO
-        return themeRepository.findAll().stream().map(theme -> {
-            // Check if the user is subscribed to the theme
-            boolean isSubscribed = subscriptionRepository.findByUserAndTheme(user, theme).isPresent();
-            return new ThemeWithSubscriptionDTO(theme.getId(), theme.getTitle(), theme.getDescription(), isSubscribed);
-        }).collect(Collectors.toList());
+        return themeCatalogCache.get(themeRepository::findAll).stream()
+                .map(theme -> new ThemeWithSubscriptionDTO(theme.getId(), theme.getTitle(), theme.getDescription(),
+                        subscriptionIndex.isSubscribed(userId, theme.getId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Computes the version of the themes listed for the current user, with aggregated queries only.
+     * Changes whenever a theme is added, modified or removed, or when the user subscribes to or unsubscribes from a theme.
+     *
+     * @return A string identifying the version of the themes with their subscription status
+     * @throws RuntimeException if the current user is not found
+     */
+    public String getThemesVersion() {
+        // Get the current user from their token
+        Long userId = currentUserService.getCurrentUser().id();
+
+        ContentVersion themes = themeRepository.findVersion();
+        ContentVersion subscriptions = subscriptionRepository.findVersionByUserId(userId);
+        return userId + "|" + themes.getLastModified() + "|" + themes.getCount()
+                + "|" + subscriptions.getLastModified() + "|" + subscriptions.getCount();
     }
 
     /**
@@ -116,7 +145,12 @@ public class ThemeService {
         theme.setUpdatedAt(LocalDateTime.now());
 
         // Save the updated theme to the database
-        return themeRepository.save(theme);
+        Theme savedTheme = themeRepository.save(theme);
+
+        // Cached articles and the catalog embed the theme title
+        articleDetailCache.invalidateAll();
+        themeCatalogCache.invalidate();
+        return savedTheme;
     }
 
     /**
@@ -131,5 +165,9 @@ public class ThemeService {
         
         // Delete the theme from the database
         themeRepository.delete(theme);
+
+        // Remove the theme from the catalog and its subscriptions from the index
+        themeCatalogCache.invalidate();
+        subscriptionIndex.removeTheme(id);
     }
 }
@@ -1,5 +1,9 @@
 package com.openclassrooms.mddapi.service;
 
+import com.openclassrooms.mddapi.cache.ArticleDetailCache;
+import com.openclassrooms.mddapi.cache.CredentialCache;
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import com.openclassrooms.mddapi.cache.UserProfileCache;
 import com.openclassrooms.mddapi.dto.RegisterDTO;
 import com.openclassrooms.mddapi.dto.UserCreationDTO;
 import com.openclassrooms.mddapi.dto.UserDTO;
@@ -25,16 +29,32 @@ public class UserService {
 
     private final UserRepository userRepository;
 
+    private final ArticleDetailCache articleDetailCache;
+
+    private final SubscriptionIndex subscriptionIndex;
+
+    private final UserProfileCache userProfileCache;
+
+    private final CredentialCache credentialCache;
+
     /**
      * Constructor injection for required dependencies.
      *
      * @param userRepository Repository for managing users
      * @param passwordEncoder Password encoder for secure password storage
+     * @param articleDetailCache Cache of assembled article details, which embed usernames
+     * @param subscriptionIndex In-memory index of subscriptions
+     * @param userProfileCache Cache of user profiles
+     * @param credentialCache Cache of credential lookups by login
      */
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, ArticleDetailCache articleDetailCache, SubscriptionIndex subscriptionIndex, UserProfileCache userProfileCache, CredentialCache credentialCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.articleDetailCache = articleDetailCache;
+        this.subscriptionIndex = subscriptionIndex;
+        this.userProfileCache = userProfileCache;
+        this.credentialCache = credentialCache;
     }
 
     /**
@@ -64,7 +84,11 @@ public class UserService {
         // user.setUpdatedAt(LocalDateTime.now());
 
         // Save the user to the database
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+
+        // Forget any earlier lookup of the new logins
+        credentialCache.invalidate(savedUser.getEmail(), savedUser.getUsername());
+        return savedUser;
     }
 
     /**
@@ -111,6 +135,9 @@ public class UserService {
             throw new RuntimeException("Cet email est déjà utilisé !");
         }
 
+        boolean usernameChanged = !user.getUsername().equals(userDTO.getUsername());
+        String previousEmail = user.getEmail();
+        String previousUsername = user.getUsername();
         user.setUsername(userDTO.getUsername());
         user.setEmail(userDTO.getEmail());
         
@@ -122,7 +149,15 @@ public class UserService {
         user.setUpdatedAt(LocalDate.now());
 
         // Save the updated user
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userProfileCache.invalidate(id);
+        credentialCache.invalidate(previousEmail, previousUsername, savedUser.getEmail(), savedUser.getUsername());
+
+        // Cached articles embed the usernames of their author and commenters
+        if (usernameChanged) {
+            articleDetailCache.invalidateAll();
+        }
+        return savedUser;
     }
 
     /**
@@ -134,6 +169,9 @@ public class UserService {
     public void deleteUser(Long id) {
         User user = getUserById(id);
         userRepository.delete(user);
+        subscriptionIndex.removeUser(id);
+        userProfileCache.invalidate(id);
+        credentialCache.invalidate(user.getEmail(), user.getUsername());
     }
 
     /**
@@ -155,21 +193,27 @@ public class UserService {
         user.setUpdatedAt(LocalDate.ofInstant(Instant.ofEpochMilli(System.currentTimeMillis()), ZoneId.systemDefault()));
 
         // Save the user in the database
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+
+        // Forget any earlier lookup of the new logins, so the user can log in at once
+        credentialCache.invalidate(savedUser.getEmail(), savedUser.getUsername());
+        return savedUser;
     }
 
     /**
-     * Retrieves a user's details by their email.
-     * @param email the email address of the user
-     * @return a UserDTO containing the user's details
+     * Retrieves a user's details by their ID, served from the user profile cache when possible.
+     * @param id the ID of the user
+     * @return a UserDTO containing the user's details, shared with other callers and not to be modified
      * @throws RuntimeException if the user is not found
      */
-    public UserDTO getUserByEmail(String email) {
-        // Fetch the user by email, throw an exception if not found
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        // Convert the User entity to a UserDTO
-        return new UserDTO(user.getId(), user.getUsername(), user.getEmail(), user.getCreatedAt(), user.getUpdatedAt());
+    public UserDTO getUserProfile(Long id) {
+        return userProfileCache.get(id, userId -> {
+            // Fetch the user by ID, throw an exception if not found
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+            // Convert the User entity to a UserDTO
+            return new UserDTO(user.getId(), user.getUsername(), user.getEmail(), user.getCreatedAt(), user.getUpdatedAt());
+        });
     }
 }
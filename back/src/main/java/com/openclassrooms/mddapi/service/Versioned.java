@@ -0,0 +1,18 @@
+package com.openclassrooms.mddapi.service;
+
+/**
+ * Version of a response, with its body unless the client already has that version.
+ *
+ * @param version A string identifying the version of the data
+ * @param body The data, or null if the client's version is current
+ * @param <T> the type of the data
+ */
+public record Versioned<T>(String version, T body) {
+
+    /**
+     * @return true if the client's version is current, so that the body was not loaded
+     */
+    public boolean isNotModified() {
+        return body == null;
+    }
+}
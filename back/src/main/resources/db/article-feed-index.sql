@@ -0,0 +1,4 @@
+-- Index of the keyset-paginated subscribed feed, ordered by (created_at, id) within each theme (see Article).
+-- Each theme of a feed is read as a backward range scan of this index, which also covers the article id.
+-- Run once on an existing database.
+CREATE INDEX idx_articles_theme_created_at_id ON articles (theme_id, created_at, id);
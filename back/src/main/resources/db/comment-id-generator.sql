@@ -0,0 +1,11 @@
+-- Id generator of the comments table, used by Hibernate to allocate comment ids by blocks of 50
+-- (see Comment#id), so that comment inserts can be sent in JDBC batches.
+-- Run once on an existing database; next_val is the last id of the next block.
+CREATE TABLE IF NOT EXISTS id_generator (
+    sequence_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'comments', COALESCE(MAX(id), 0) + 50 FROM comments
+ON DUPLICATE KEY UPDATE sequence_name = sequence_name;
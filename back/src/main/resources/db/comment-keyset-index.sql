@@ -0,0 +1,3 @@
+-- Index of the keyset-paginated comments of an article, ordered by (created_at, id) (see Comment).
+-- Run once on an existing database.
+CREATE INDEX idx_comments_article_created_at_id ON comments (article_id, created_at, id);
@@ -0,0 +1,215 @@
+package com.openclassrooms.mddapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import com.openclassrooms.mddapi.dto.ArticleNotificationDTO;
+import com.openclassrooms.mddapi.service.ArticleCreatedEvent;
+import com.openclassrooms.mddapi.service.ArticleStreamHub;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fan-out and disconnection of article streams, with emitters recording their events instead of writing them.
+ * An emitter can be blocked in its next write, holding its lock like a write to a client that stopped reading.
+ */
+class ArticleStreamHubTests {
+
+    private static final long THEME = 1;
+    private static final long OTHER_THEME = 2;
+    private static final int BUFFER_SIZE = 2;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SubscriptionIndex subscriptionIndex = new SubscriptionIndex(null, meterRegistry);
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+    private ArticleStreamHub hub;
+    private long nextArticleId = 1;
+
+    @AfterEach
+    void stopHub() {
+        emitters.forEach(RecordingEmitter::release);
+        hub.stop();
+    }
+
+    @Test
+    void articlesOnlyReachTheSubscribersOfTheirTheme() {
+        startHub(Duration.ofSeconds(10));
+        subscriptionIndex.add(1L, THEME);
+        subscriptionIndex.add(2L, OTHER_THEME);
+        subscriptionIndex.add(3L, THEME);
+        // More subscribers than connected users, so that the fan-out walks the connected users for this theme
+        for (long userId = 100; userId < 120; userId++) {
+            subscriptionIndex.add(userId, OTHER_THEME);
+        }
+        RecordingEmitter first = open(1L);
+        RecordingEmitter other = open(2L);
+        RecordingEmitter second = open(3L);
+        RecordingEmitter unsubscribed = open(4L);
+
+        long article = publish(THEME);
+        long otherArticle = publish(OTHER_THEME);
+
+        await().atMost(TIMEOUT).until(() -> first.articles().equals(List.of(article))
+                && second.articles().equals(List.of(article))
+                && other.articles().equals(List.of(otherArticle)));
+        assertTrue(unsubscribed.articles().isEmpty());
+    }
+
+    @Test
+    void fullBufferDisconnectsTheStreamWithoutDelayingOthers() {
+        startHub(Duration.ofSeconds(10));
+        subscriptionIndex.add(1L, THEME);
+        subscriptionIndex.add(2L, THEME);
+        RecordingEmitter slow = open(1L);
+        RecordingEmitter fast = open(2L);
+
+        // The slow stream blocks on its first article, then buffers the next ones until its buffer is full
+        slow.block();
+        long held = publish(THEME);
+        await().atMost(TIMEOUT).until(slow::isWriting);
+        for (int i = 0; i < BUFFER_SIZE + 1; i++) {
+            publish(THEME);
+            // The fast stream keeps up, so only the slow one can overflow
+            int received = i + 2;
+            await().atMost(TIMEOUT).until(() -> fast.articles().size() == received);
+        }
+
+        assertEquals(1, hub.countConnections());
+        assertEquals(1, evictions());
+        // Its write still holds the emitter, which is completed once the write returns
+        assertFalse(slow.completed);
+
+        slow.release();
+        await().atMost(TIMEOUT).until(() -> slow.completed);
+        assertEquals(List.of(held), slow.articles());
+        publish(THEME);
+        await().atMost(TIMEOUT).until(() -> fast.articles().size() == BUFFER_SIZE + 3);
+        assertEquals(List.of(held), slow.articles());
+    }
+
+    @Test
+    void blockedWriteDisconnectsTheStream() {
+        startHub(Duration.ofMillis(200));
+        subscriptionIndex.add(1L, THEME);
+        RecordingEmitter blocked = open(1L);
+
+        blocked.block();
+        publish(THEME);
+        await().atMost(TIMEOUT).until(() -> hub.countConnections() == 0);
+        assertEquals(1, evictions());
+
+        blocked.release();
+        await().atMost(TIMEOUT).until(() -> blocked.completed);
+    }
+
+    @Test
+    void stopCompletesIdleStreamsAtOnce() {
+        startHub(Duration.ofSeconds(10));
+        RecordingEmitter idle = open(1L);
+
+        hub.stop();
+
+        assertTrue(idle.completed);
+        assertEquals(0, hub.countConnections());
+    }
+
+    private void startHub(Duration writeTimeout) {
+        hub = new ArticleStreamHub(subscriptionIndex, new ObjectMapper().findAndRegisterModules(), 100, BUFFER_SIZE,
+                Duration.ofMinutes(30), Duration.ofHours(1), 2, writeTimeout, meterRegistry) {
+            @Override
+            protected SseEmitter createEmitter(long timeout) {
+                RecordingEmitter emitter = new RecordingEmitter(timeout);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+        hub.start();
+    }
+
+    private RecordingEmitter open(Long userId) {
+        return (RecordingEmitter) hub.open(userId);
+    }
+
+    private long publish(long themeId) {
+        long articleId = nextArticleId++;
+        hub.onArticleCreated(new ArticleCreatedEvent(new ArticleNotificationDTO(articleId, "Article " + articleId,
+                LocalDateTime.now(), "author", themeId, "Theme " + themeId)));
+        return articleId;
+    }
+
+    private double evictions() {
+        return meterRegistry.get("articles.stream.evictions").counter().count();
+    }
+
+    /**
+     * Emitter recording the IDs of the article events sent to it.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<Long> articles = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate;
+        private volatile boolean writing;
+        private volatile boolean completed;
+
+        private RecordingEmitter(long timeout) {
+            super(timeout);
+        }
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            CountDownLatch blocking = gate;
+            if (blocking != null) {
+                blocking.countDown();
+            }
+        }
+
+        boolean isWriting() {
+            return writing;
+        }
+
+        List<Long> articles() {
+            return List.copyOf(articles);
+        }
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) {
+            writing = true;
+            try {
+                CountDownLatch blocking = gate;
+                if (blocking != null) {
+                    blocking.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                writing = false;
+            }
+            String event = builder.build().stream().map(item -> item.getData().toString()).reduce("", String::concat);
+            if (event.contains("event:article")) {
+                articles.add(Long.valueOf(event.substring(event.indexOf("id:") + 3, event.indexOf('\n', event.indexOf("id:")))));
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.openclassrooms.mddapi;
+
+import com.openclassrooms.mddapi.service.CommentBatchWriter;
+import com.openclassrooms.mddapi.support.TestDataset;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batching of comment inserts, on an embedded database.
+ * Each test runs its own writer, whose transactions can be held at a gate: while the writer waits there with a first
+ * comment, the following ones pile up in its queue, so that the content of the next batch is known in advance.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ActiveProfiles("test")
+class CommentBatchWriterTests {
+
+    private static final long ARTICLE = TestDataset.ARTICLE;
+    private static final long MISSING_ARTICLE = 999;
+    private static final long SENDER = TestDataset.USER;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private SimpleMeterRegistry meterRegistry;
+    private GatedTransactionManager gatedTransactionManager;
+    private CommentBatchWriter writer;
+
+    @BeforeAll
+    void createDataset() {
+        TestDataset.insertBase(jdbcTemplate, "Article");
+    }
+
+    @AfterEach
+    void stopWriter() {
+        gatedTransactionManager.open();
+        writer.stop();
+    }
+
+    @Test
+    void concurrentInsertsAreCoalescedIntoOneBatch() {
+        startWriter(50);
+        List<CompletableFuture<Long>> inserts = holdWriterAndQueue(10, ARTICLE);
+        gatedTransactionManager.open();
+
+        Set<Long> ids = new HashSet<>();
+        inserts.forEach(insert -> ids.add(insert.join()));
+        assertEquals(11, ids.size());
+        // The first comment held at the gate, then every queued comment in a single batch
+        DistributionSummary batchSize = meterRegistry.get("comments.write.batch.size").summary();
+        assertEquals(2, batchSize.count());
+        assertEquals(10, batchSize.max());
+        assertEquals(2, gatedTransactionManager.transactions.get());
+    }
+
+    @Test
+    void failingBatchFallsBackToSingleInsertsAndOnlyFailsTheFaultyComment() {
+        startWriter(50);
+        List<CompletableFuture<Long>> inserts = holdWriterAndQueue(4, ARTICLE);
+        CompletableFuture<Long> faulty = submit(MISSING_ARTICLE);
+        await().atMost(TIMEOUT).until(() -> queueSize() == 5);
+        gatedTransactionManager.open();
+
+        CompletionException failure = assertThrows(CompletionException.class, faulty::join);
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        for (CompletableFuture<Long> insert : inserts) {
+            assertTrue(commentExists(insert.join()));
+        }
+        // The held comment, the failed batch, then one transaction per comment of that batch
+        assertEquals(1 + 1 + 5, gatedTransactionManager.transactions.get());
+    }
+
+    @Test
+    void stopInsertsTheQueuedComments() throws Exception {
+        startWriter(50);
+        long before = countComments();
+        List<CompletableFuture<Long>> inserts = holdWriterAndQueue(10, ARTICLE);
+
+        CompletableFuture<Void> stop = CompletableFuture.runAsync(writer::stop, callers);
+        await().atMost(TIMEOUT).until(() -> !writer.isRunning());
+        assertFalse(stop.isDone());
+        gatedTransactionManager.open();
+        stop.get();
+
+        // Every comment is committed once stop() returns
+        assertEquals(before + 11, countComments());
+        for (CompletableFuture<Long> insert : inserts) {
+            assertTrue(commentExists(insert.join()));
+        }
+        // Once stopped, comments are inserted directly by their caller
+        assertTrue(commentExists(writer.insert(ARTICLE, SENDER, "After stop", LocalDateTime.now())));
+    }
+
+    @Test
+    void interruptedWriterReleasesItsCommentsAndStops() {
+        startWriter(50);
+        List<CompletableFuture<Long>> inserts = holdWriterAndQueue(3, ARTICLE);
+
+        gatedTransactionManager.interruptWaiting();
+
+        // The held comment is completed, one way or the other, and the queued ones fail instead of waiting forever
+        await().atMost(TIMEOUT).until(() -> inserts.stream().allMatch(CompletableFuture::isDone));
+        for (CompletableFuture<Long> queued : inserts.subList(1, inserts.size())) {
+            CompletionException failure = assertThrows(CompletionException.class, queued::join);
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+        }
+        assertFalse(writer.isRunning());
+        // Comments are then inserted directly by their caller
+        gatedTransactionManager.open();
+        assertTrue(commentExists(writer.insert(ARTICLE, SENDER, "After interrupt", LocalDateTime.now())));
+    }
+
+    @Test
+    void allocatedIdsAreUnique() {
+        // Small batches spanning several blocks of the id generator, from a few callers at a time
+        startWriter(7);
+        gatedTransactionManager.open();
+        ExecutorService fewCallers = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Long>> inserts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            inserts.add(CompletableFuture.supplyAsync(
+                    () -> writer.insert(ARTICLE, SENDER, "Comment", LocalDateTime.now()), fewCallers));
+        }
+
+        Set<Long> ids = new HashSet<>();
+        inserts.forEach(insert -> ids.add(insert.join()));
+        assertEquals(300, ids.size());
+        for (Long id : ids) {
+            assertTrue(commentExists(id));
+        }
+        Long nextValue = jdbcTemplate.queryForObject(
+                "SELECT next_val FROM id_generator WHERE sequence_name = 'comments'", Long.class);
+        assertTrue(nextValue >= ids.stream().mapToLong(Long::longValue).max().orElseThrow());
+        fewCallers.shutdown();
+    }
+
+    private void startWriter(int maxBatchSize) {
+        meterRegistry = new SimpleMeterRegistry();
+        gatedTransactionManager = new GatedTransactionManager(transactionManager);
+        writer = new CommentBatchWriter(entityManager, gatedTransactionManager, 100, maxBatchSize, Duration.ZERO,
+                TIMEOUT, meterRegistry);
+        writer.start();
+    }
+
+    /**
+     * Submits a first comment and waits for the writer to be held at the gate with it,
+     * then submits {@code count} comments and waits for them to be queued.
+     *
+     * @return Every submitted insert, the held one first
+     */
+    private List<CompletableFuture<Long>> holdWriterAndQueue(int count, long articleId) {
+        List<CompletableFuture<Long>> inserts = new ArrayList<>();
+        inserts.add(submit(ARTICLE));
+        await().atMost(TIMEOUT).until(() -> gatedTransactionManager.waiting.get() == 1);
+        for (int i = 0; i < count; i++) {
+            inserts.add(submit(articleId));
+        }
+        await().atMost(TIMEOUT).until(() -> queueSize() == count);
+        return inserts;
+    }
+
+    private CompletableFuture<Long> submit(long articleId) {
+        return CompletableFuture.supplyAsync(
+                () -> writer.insert(articleId, SENDER, "Comment", LocalDateTime.now()), callers);
+    }
+
+    private double queueSize() {
+        return meterRegistry.get("comments.write.queue.size").gauge().value();
+    }
+
+    private long countComments() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments", Long.class);
+    }
+
+    private boolean commentExists(Long id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments WHERE id = ?", Long.class, id) == 1;
+    }
+
+    /**
+     * Transaction manager holding every transaction until its gate is opened.
+     */
+    private static final class GatedTransactionManager implements PlatformTransactionManager {
+
+        private final PlatformTransactionManager delegate;
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger transactions = new AtomicInteger();
+        private volatile Thread waitingThread;
+
+        private GatedTransactionManager(PlatformTransactionManager delegate) {
+            this.delegate = delegate;
+        }
+
+        private void open() {
+            gate.countDown();
+        }
+
+        private void interruptWaiting() {
+            waitingThread.interrupt();
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            waitingThread = Thread.currentThread();
+            waiting.incrementAndGet();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting.decrementAndGet();
+            }
+            transactions.incrementAndGet();
+            return delegate.getTransaction(definition);
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            delegate.commit(status);
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            delegate.rollback(status);
+        }
+    }
+}
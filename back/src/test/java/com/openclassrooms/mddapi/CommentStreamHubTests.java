@@ -0,0 +1,345 @@
+package com.openclassrooms.mddapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.dto.CommentDTO;
+import com.openclassrooms.mddapi.service.CommentAddedEvent;
+import com.openclassrooms.mddapi.service.CommentService;
+import com.openclassrooms.mddapi.service.CommentStreamHub;
+import com.openclassrooms.mddapi.support.TestDataset;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Broadcast of live comments to sessions recording their frames instead of writing them, on an embedded database
+ * holding the comments to catch up from. A session can be blocked in its next send, like a reader that stopped reading.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ActiveProfiles("test")
+class CommentStreamHubTests {
+
+    private static final long ARTICLE = TestDataset.ARTICLE;
+    private static final long SENDER = TestDataset.USER;
+    // Far above the IDs allocated to the comments of the other test classes sharing the database
+    private static final List<Long> STORED_COMMENTS = List.of(900_001L, 900_002L, 900_003L);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<RecordingSession> sessions = new CopyOnWriteArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private CommentStreamHub hub;
+    private long nextCommentId = 1_000_000;
+
+    @BeforeAll
+    void createDataset() {
+        TestDataset.insertBase(jdbcTemplate, "Article");
+        LocalDateTime createdAt = LocalDateTime.now().minusHours(1);
+        for (Long commentId : STORED_COMMENTS) {
+            createdAt = createdAt.plusMinutes(1);
+            TestDataset.insertComment(jdbcTemplate, commentId, ARTICLE, SENDER, createdAt);
+        }
+    }
+
+    @AfterEach
+    void stopHub() {
+        sessions.forEach(RecordingSession::release);
+        hub.stop();
+    }
+
+    @Test
+    void commentsCollectedBeforeAFlushAreSentInOneFrame() {
+        // Comments are only flushed when the hub stops
+        startHub(Duration.ofHours(1), Duration.ofSeconds(10), 524288);
+        RecordingSession first = subscribe(null);
+        RecordingSession second = subscribe(null);
+        List<Long> published = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            published.add(publish("Comment " + i));
+        }
+
+        hub.stop();
+
+        await().atMost(TIMEOUT).until(() -> first.closeStatus != null && second.closeStatus != null);
+        assertEquals(List.of(published), first.frames());
+        assertEquals(List.of(published), second.frames());
+        assertEquals(CloseStatus.GOING_AWAY, first.closeStatus);
+    }
+
+    @Test
+    void catchUpSendsTheCommentsFollowingTheLastKnownOne() {
+        startHub(Duration.ofMillis(50), Duration.ofSeconds(10), 524288);
+
+        RecordingSession session = subscribe(STORED_COMMENTS.get(0));
+
+        await().atMost(TIMEOUT).until(() -> !session.frames().isEmpty());
+        assertEquals(List.of(STORED_COMMENTS.subList(1, STORED_COMMENTS.size())), session.frames());
+        // Then the comments committed afterwards
+        long added = publish("New comment");
+        await().atMost(TIMEOUT).until(() -> session.frames().size() == 2);
+        assertEquals(List.of(added), session.frames().get(1));
+        assertNull(session.closeStatus);
+    }
+
+    @Test
+    void catchUpFromAnUnknownCommentClosesTheSession() {
+        startHub(Duration.ofMillis(50), Duration.ofSeconds(10), 524288);
+
+        RecordingSession session = subscribe(999L);
+
+        await().atMost(TIMEOUT).until(() -> session.closeStatus != null);
+        assertEquals(CloseStatus.BAD_DATA.getCode(), session.closeStatus.getCode());
+        assertEquals(0, hub.countSessions());
+    }
+
+    @Test
+    void slowSendClosesTheSessionWithoutDelayingOthers() {
+        startHub(Duration.ofMillis(50), Duration.ofMillis(200), 524288);
+        RecordingSession slow = subscribe(null);
+        RecordingSession fast = subscribe(null);
+
+        slow.block();
+        long held = publish("Held");
+        await().atMost(TIMEOUT).until(slow::isSending);
+
+        // Closed while its send is still in progress
+        await().atMost(TIMEOUT).until(() -> hub.countSessions() == 1);
+        assertEquals(1, evictions());
+        assertNull(slow.closeStatus);
+        long next = publish("Next");
+        await().atMost(TIMEOUT).until(() -> fast.frames().size() == 2);
+        assertEquals(List.of(List.of(held), List.of(next)), fast.frames());
+
+        slow.release();
+        await().atMost(TIMEOUT).until(() -> slow.closeStatus != null);
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, slow.closeStatus);
+        assertEquals(List.of(List.of(held)), slow.frames());
+    }
+
+    @Test
+    void overflowingBufferClosesTheSession() {
+        startHub(Duration.ofMillis(50), Duration.ofSeconds(10), 1024);
+        RecordingSession slow = subscribe(null);
+
+        slow.block();
+        long held = publish("Held");
+        await().atMost(TIMEOUT).until(slow::isSending);
+        // Larger than the buffer once encoded
+        publish("x".repeat(2048));
+
+        await().atMost(TIMEOUT).until(() -> hub.countSessions() == 0);
+        assertEquals(1, evictions());
+
+        slow.release();
+        await().atMost(TIMEOUT).until(() -> slow.closeStatus != null);
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, slow.closeStatus);
+        assertEquals(List.of(List.of(held)), slow.frames());
+    }
+
+    private void startHub(Duration flushInterval, Duration sendTimeLimit, int bufferSizeLimit) {
+        meterRegistry = new SimpleMeterRegistry();
+        hub = new CommentStreamHub(commentService, objectMapper, 100, flushInterval, Duration.ofHours(1),
+                sendTimeLimit, bufferSizeLimit, 2, meterRegistry);
+        hub.start();
+    }
+
+    private RecordingSession subscribe(Long afterCommentId) {
+        RecordingSession session = new RecordingSession(String.valueOf(sessions.size()), objectMapper);
+        sessions.add(session);
+        try {
+            hub.subscribe(ARTICLE, afterCommentId, session);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return session;
+    }
+
+    private long publish(String content) {
+        long commentId = nextCommentId++;
+        hub.onCommentAdded(new CommentAddedEvent(
+                new CommentDTO(commentId, content, ARTICLE, SENDER, "sender", LocalDateTime.now())));
+        return commentId;
+    }
+
+    private double evictions() {
+        return meterRegistry.get("comments.live.evictions").counter().count();
+    }
+
+    /**
+     * Session recording the comment IDs of each frame sent to it.
+     */
+    private static final class RecordingSession implements WebSocketSession {
+
+        private final String id;
+        private final ObjectMapper objectMapper;
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private final List<List<Long>> frames = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate;
+        private volatile boolean sending;
+        private volatile CloseStatus closeStatus;
+
+        private RecordingSession(String id, ObjectMapper objectMapper) {
+            this.id = id;
+            this.objectMapper = objectMapper;
+        }
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            CountDownLatch blocking = gate;
+            if (blocking != null) {
+                blocking.countDown();
+            }
+        }
+
+        boolean isSending() {
+            return sending;
+        }
+
+        List<List<Long>> frames() {
+            return List.copyOf(frames);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            sending = true;
+            try {
+                CountDownLatch blocking = gate;
+                if (blocking != null) {
+                    blocking.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sending = false;
+            }
+            if (message instanceof TextMessage text) {
+                List<Long> commentIds = new ArrayList<>();
+                for (JsonNode comment : objectMapper.readTree(text.getPayload()).get("items")) {
+                    commentIds.add(comment.get("id").asLong());
+                }
+                frames.add(commentIds);
+            }
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closeStatus == null;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public URI getUri() {
+            return URI.create("ws://localhost/api/comments/article/" + ARTICLE + "/live");
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+    }
+}
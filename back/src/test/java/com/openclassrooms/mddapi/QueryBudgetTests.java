@@ -0,0 +1,235 @@
+package com.openclassrooms.mddapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.cache.ArticleDetailCache;
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import com.openclassrooms.mddapi.cache.ThemeCatalogCache;
+import com.openclassrooms.mddapi.repository.ArticleRepository;
+import com.openclassrooms.mddapi.support.QueryCountTestConfiguration;
+import com.openclassrooms.mddapi.support.QueryCounter;
+import com.openclassrooms.mddapi.support.TestDataset;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Query budgets of the main read endpoints, measured with cold caches on an embedded database.
+ * A budget that no longer holds usually means a new N+1 query: the failure lists the executed statements.
+ * When a change legitimately adds or removes a query, update the budget in the same change.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(QueryCountTestConfiguration.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ActiveProfiles("test")
+class QueryBudgetTests {
+
+    private static final int THEMES = 3;
+    private static final int ARTICLES = 30;
+    private static final int COMMENTS_PER_ARTICLE = 3;
+    private static final long LONG_THREAD = ARTICLES + 1;
+    private static final int LONG_THREAD_COMMENTS = 50;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private QueryCounter queryCounter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private SubscriptionIndex subscriptionIndex;
+
+    @Autowired
+    private ArticleDetailCache articleDetailCache;
+
+    @Autowired
+    private ThemeCatalogCache themeCatalogCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String token;
+
+    @BeforeAll
+    void createDataset() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        TestDataset.insertUser(jdbcTemplate, 1, "reader", passwordEncoder.encode("Password1!"));
+        for (int theme = 1; theme <= THEMES; theme++) {
+            TestDataset.insertTheme(jdbcTemplate, theme, "Theme " + theme);
+            TestDataset.insertSubscription(jdbcTemplate, theme, 1, theme);
+        }
+        for (int article = 1; article <= ARTICLES; article++) {
+            LocalDateTime createdAt = now.minusMinutes(ARTICLES - article);
+            TestDataset.insertArticle(jdbcTemplate, article, "Article " + article, 1 + article % THEMES, 1, createdAt);
+            for (int comment = 1; comment <= COMMENTS_PER_ARTICLE; comment++) {
+                TestDataset.insertComment(jdbcTemplate, (article - 1) * COMMENTS_PER_ARTICLE + comment, article, 1, createdAt);
+            }
+        }
+        TestDataset.insertArticle(jdbcTemplate, LONG_THREAD, "Long thread", 1, 1, now);
+        for (int comment = 1; comment <= LONG_THREAD_COMMENTS; comment++) {
+            TestDataset.insertComment(jdbcTemplate, ARTICLES * COMMENTS_PER_ARTICLE + comment, LONG_THREAD, 1, now);
+        }
+        subscriptionIndex.reload();
+
+        String login = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"emailOrUsername\":\"reader\",\"password\":\"Password1!\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        token = new ObjectMapper().readTree(login).get("token").asText();
+    }
+
+    @BeforeEach
+    void clearCaches() {
+        articleDetailCache.invalidateAll();
+        themeCatalogCache.invalidate();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void feedPageHasAFixedBudgetWhateverItsSize() throws Exception {
+        queryCounter.assertStatements(4, () -> perform(get("/api/articles/subscribed/1/feed?size=5")));
+        clearCaches();
+        queryCounter.assertStatements(4, () -> perform(get("/api/articles/subscribed/1/feed?size=20")));
+    }
+
+    @Test
+    void notModifiedFeedPageOnlyRunsTheVersionQuery() throws Exception {
+        assertNotModifiedOnlyRunsTheVersionQuery("/api/articles/subscribed/1/feed?size=5");
+    }
+
+    @Test
+    void articleListDoesNotQueryPerArticle() throws Exception {
+        queryCounter.assertStatements(2, () -> perform(get("/api/articles")));
+    }
+
+    @Test
+    void subscribedArticlesDoNotQueryPerArticle() throws Exception {
+        queryCounter.assertStatements(4, () -> perform(get("/api/articles/subscribed/1")));
+    }
+
+    @Test
+    void notModifiedSubscribedArticlesOnlyRunTheVersionQuery() throws Exception {
+        assertNotModifiedOnlyRunsTheVersionQuery("/api/articles/subscribed/1");
+    }
+
+    @Test
+    void articleDetailLoadsCommentsInOneQuery() throws Exception {
+        queryCounter.assertStatements(2, () -> perform(get("/api/articles/1")));
+    }
+
+    @Test
+    void cachedArticleDetailRunsNoQuery() throws Exception {
+        perform(get("/api/articles/1"));
+        queryCounter.assertStatements(0, () -> perform(get("/api/articles/1")));
+    }
+
+    @Test
+    void articleCommentsDoNotQueryPerComment() throws Exception {
+        queryCounter.assertStatements(2, () -> perform(get("/api/comments/article/1")));
+    }
+
+    @Test
+    void longThreadDetailEmbedsFirstCommentPageAndCount() throws Exception {
+        queryCounter.assertStatements(3, () -> perform(get("/api/articles/" + LONG_THREAD)));
+    }
+
+    @Test
+    void commentPageHasAFixedBudgetWhateverItsSize() throws Exception {
+        queryCounter.assertStatements(2, () -> perform(get("/api/comments/article/" + LONG_THREAD + "?size=5")));
+        queryCounter.assertStatements(2, () -> perform(get("/api/comments/article/" + LONG_THREAD + "?size=50")));
+    }
+
+    @Test
+    void themesDoNotQueryPerTheme() throws Exception {
+        queryCounter.assertStatements(3, () -> perform(get("/api/themes")));
+    }
+
+    @Test
+    void loadingAnArticleEntityDoesNotReadItsContent() throws Exception {
+        List<String> statements = queryCounter.record(() ->
+                transactionTemplate.executeWithoutResult(status -> articleRepository.findById(1L).orElseThrow().getTitle()));
+        assertEquals(1, statements.size());
+        assertFalse(statements.get(0).contains("content"), statements.get(0));
+    }
+
+    @Test
+    void queryCounterReportsEveryStatement() throws Exception {
+        assertEquals(1, queryCounter.record(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM articles", Long.class)).size());
+    }
+
+    @Test
+    void statementMetricCountsJdbcTemplateQueries() throws Exception {
+        // The feed page is read with JdbcTemplate, next to the JPA queries
+        String uri = "/api/articles/subscribed/{userId}/feed";
+        double before = statementTotal(uri);
+        List<String> statements = queryCounter.record(() -> perform(get("/api/articles/subscribed/1/feed?size=5")));
+        assertEquals(statements.size(), statementTotal(uri) - before, String.join("\n", statements));
+    }
+
+    private double statementTotal(String uri) {
+        DistributionSummary summary = meterRegistry.find("http.server.requests.statements").tag("uri", uri).summary();
+        return summary != null ? summary.totalAmount() : 0;
+    }
+
+    private void perform(MockHttpServletRequestBuilder request) throws Exception {
+        mockMvc.perform(request.header("Authorization", "Bearer " + token)).andExpect(status().isOk());
+    }
+
+    /**
+     * Revalidates a response with its ETag, and fails unless the 304 costs the version query alone.
+     */
+    private void assertNotModifiedOnlyRunsTheVersionQuery(String url) throws Exception {
+        String eTag = mockMvc.perform(get(url).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        clearCaches();
+        List<String> statements = queryCounter.record(() -> mockMvc.perform(get(url)
+                        .header("Authorization", "Bearer " + token)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified()));
+        assertEquals(1, statements.size(), String.join("\n", statements));
+        assertTrue(statements.get(0).toLowerCase().contains("max("), statements.get(0));
+    }
+}
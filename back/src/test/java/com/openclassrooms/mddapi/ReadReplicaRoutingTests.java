@@ -0,0 +1,96 @@
+package com.openclassrooms.mddapi;
+
+import com.openclassrooms.mddapi.config.ReplicaLagMonitor;
+import com.openclassrooms.mddapi.dto.ArticleSummaryDTO;
+import com.openclassrooms.mddapi.repository.ArticleRepository;
+import com.openclassrooms.mddapi.service.ArticleService;
+import com.openclassrooms.mddapi.support.TestDataset;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing of connections between a primary and a replica, played by two embedded databases holding different copies
+ * of the same article, so that the title read tells which database served it.
+ * The replica's lag is read from a table of the replica: dropping it makes the lag check fail.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "mddapi.datasource.replica.url=" + ReadReplicaRoutingTests.REPLICA_URL,
+        "mddapi.datasource.replica.lag-query=SELECT seconds FROM replica_lag",
+        "mddapi.datasource.replica.max-lag=2s",
+        "mddapi.datasource.replica.check-interval=50ms"
+})
+class ReadReplicaRoutingTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routingreplica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final Duration MONITOR_TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ArticleService articleService;
+
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    // Writable connections to the replica, standing for replication
+    private JdbcTemplate replication;
+
+    @BeforeAll
+    void createDatabases() {
+        replication = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+        // Copy the schema created by Hibernate on the primary
+        for (String statement : jdbcTemplate.queryForList("SCRIPT NODATA", String.class)) {
+            replication.execute(statement);
+        }
+        TestDataset.insertBase(jdbcTemplate, "Primary copy");
+        TestDataset.insertBase(replication, "Replica copy");
+    }
+
+    @Test
+    void readOnlyServiceCallsGoToTheReplica() {
+        replication.execute("CREATE TABLE IF NOT EXISTS replica_lag (seconds BIGINT)");
+        replication.update("DELETE FROM replica_lag");
+        replication.update("INSERT INTO replica_lag (seconds) VALUES (0)");
+        await().atMost(MONITOR_TIMEOUT).until(replicaLagMonitor::isReplicaAvailable);
+
+        assertEquals("Replica copy", readTitle());
+        // Repository calls outside of a service transaction stay on the primary
+        assertEquals("Primary copy", articleRepository.findDTOById(TestDataset.ARTICLE).orElseThrow().getTitle());
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhenTheLagCheckFails() {
+        replication.execute("DROP TABLE IF EXISTS replica_lag");
+        await().atMost(MONITOR_TIMEOUT).until(() -> !replicaLagMonitor.isReplicaAvailable());
+
+        assertEquals("Primary copy", readTitle());
+    }
+
+    private String readTitle() {
+        List<ArticleSummaryDTO> articles = articleService.getAllArticles();
+        assertEquals(1, articles.size());
+        return articles.get(0).getTitle();
+    }
+}
@@ -0,0 +1,168 @@
+package com.openclassrooms.mddapi;
+
+import com.openclassrooms.mddapi.cache.ArticleDetailCache;
+import com.openclassrooms.mddapi.cache.CredentialCache;
+import com.openclassrooms.mddapi.cache.SubscriptionIndex;
+import com.openclassrooms.mddapi.cache.UserProfileCache;
+import com.openclassrooms.mddapi.config.BoundedPasswordEncoder;
+import com.openclassrooms.mddapi.config.PasswordHashingOverloadedException;
+import com.openclassrooms.mddapi.dto.AuthResponseDTO;
+import com.openclassrooms.mddapi.dto.RegisterDTO;
+import com.openclassrooms.mddapi.repository.UserRepository;
+import com.openclassrooms.mddapi.service.AuthService;
+import com.openclassrooms.mddapi.service.JwtService;
+import com.openclassrooms.mddapi.service.UserService;
+import com.openclassrooms.mddapi.support.TestDataset;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Registration while the password hashing pool is full, on an embedded database.
+ * The pool has one thread and room for one waiting hash, both taken by hashes held at a gate.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ActiveProfiles("test")
+class RegistrationOverloadTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ArticleDetailCache articleDetailCache;
+
+    @Autowired
+    private SubscriptionIndex subscriptionIndex;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private CredentialCache credentialCache;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GatedPasswordEncoder gatedEncoder = new GatedPasswordEncoder();
+    private final BoundedPasswordEncoder passwordEncoder =
+            new BoundedPasswordEncoder(gatedEncoder, 1, 1, Duration.ofSeconds(2), meterRegistry);
+
+    @BeforeAll
+    void createDataset() {
+        // Before registering, so that the registered user does not take the ID of the base user
+        TestDataset.insertBase(jdbcTemplate, "Article");
+    }
+
+    @AfterEach
+    void closeEncoder() {
+        gatedEncoder.open();
+        passwordEncoder.close();
+    }
+
+    @Test
+    void registrationRejectedByAFullPoolCreatesNoUserAndCanBeRetried() {
+        AuthService authService = authService();
+        RegisterDTO registration = new RegisterDTO();
+        registration.setEmail("overload@example.com");
+        registration.setUsername("overload");
+        registration.setPassword("Password1!");
+
+        gatedEncoder.close();
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("running"));
+        await().atMost(TIMEOUT).until(() -> gatedEncoder.entered.get() == 1);
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("waiting"));
+        await().atMost(TIMEOUT).until(() -> meterRegistry.get("auth.password.queue.size").gauge().value() == 1);
+
+        assertThrows(PasswordHashingOverloadedException.class, () -> authService.register(registration));
+        assertFalse(userRepository.findByEmail(registration.getEmail()).isPresent());
+
+        // The retry advertised by the rejection succeeds once the pool has room again
+        gatedEncoder.open();
+        running.join();
+        waiting.join();
+        AuthResponseDTO response = authService.register(registration);
+
+        assertFalse(response.getToken().isBlank());
+        assertTrue(userRepository.findByEmail(registration.getEmail()).isPresent());
+        // The token is issued without checking the password that was just hashed
+        assertEquals(0, gatedEncoder.matches.get());
+    }
+
+    private AuthService authService() {
+        UserService userService = new UserService(userRepository, passwordEncoder, articleDetailCache,
+                subscriptionIndex, userProfileCache, credentialCache);
+        return new AuthService(jwtService, userService, authenticationManager);
+    }
+
+    /**
+     * Cheap BCrypt encoder whose hashes wait at a gate while it is closed.
+     */
+    private static final class GatedPasswordEncoder implements PasswordEncoder {
+
+        private final PasswordEncoder delegate = new BCryptPasswordEncoder(4);
+        private final AtomicInteger entered = new AtomicInteger();
+        private final AtomicInteger matches = new AtomicInteger();
+        private volatile CountDownLatch gate;
+
+        void close() {
+            gate = new CountDownLatch(1);
+        }
+
+        void open() {
+            CountDownLatch blocking = gate;
+            if (blocking != null) {
+                blocking.countDown();
+            }
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            entered.incrementAndGet();
+            try {
+                CountDownLatch blocking = gate;
+                if (blocking != null) {
+                    blocking.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return delegate.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            matches.incrementAndGet();
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+    }
+}
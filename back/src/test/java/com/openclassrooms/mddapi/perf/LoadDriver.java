@@ -0,0 +1,233 @@
+package com.openclassrooms.mddapi.perf;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load driver, used to compare the throughput of the API between execution modes and releases.
+ * Each of {@code concurrency} connections sends a request, waits for its response, and sends the next one,
+ * so the measured throughput is what the server sustains at that concurrency.
+ *
+ * Run against a started server, for instance once with the default profile and once with {@code virtual-threads}:
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.openclassrooms.mddapi.perf.LoadDriver \
+ *     -Dexec.args="--url=http://localhost:8080/api/themes --token=$TOKEN --concurrency=1000 --duration=60s"
+ * </pre>
+ * Options: {@code --url} (repeatable, requests rotate over them), {@code --token} (bearer token),
+ * {@code --concurrency} (default 1000), {@code --duration} (default 60s), {@code --warmup} (default 10s).
+ *
+ * With {@code --scenario=mixed}, the driver replays a mix of user calls against a server started with the
+ * {@code perf} profile instead, see {@link MixedScenario}.
+ * Prints the throughput, latency percentiles and the count of each status code, overall and per operation.
+ */
+public final class LoadDriver {
+
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, List<String>> options = parse(args);
+        int concurrency = Integer.parseInt(first(options, "concurrency", "1000"));
+        Duration duration = Duration.parse("PT" + first(options, "duration", "60s").toUpperCase());
+        Duration warmup = Duration.parse("PT" + first(options, "warmup", "10s").toUpperCase());
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        Scenario scenario;
+        if ("mixed".equals(first(options, "scenario", "urls"))) {
+            scenario = MixedScenario.create(client,
+                    first(options, "base-url", "http://localhost:8080"),
+                    Integer.parseInt(first(options, "users", "10000")),
+                    Integer.parseInt(first(options, "logged-in-users", "200")),
+                    Long.parseLong(first(options, "articles", "100000")),
+                    MixedScenario.parseMix(first(options, "mix", MixedScenario.DEFAULT_MIX)));
+        } else {
+            scenario = urls(options.getOrDefault("url", List.of("http://localhost:8080/api/themes")),
+                    first(options, "token", null));
+        }
+
+        LoadResult result = run(client, scenario, concurrency, warmup, duration);
+        System.out.println(result.report(concurrency));
+    }
+
+    /**
+     * Runs the closed loop: every connection sends requests back to back until the end of the warmup and the measure.
+     * Only the requests completed after the warmup are measured.
+     *
+     * @param client The client sending the requests
+     * @param scenario The scenario choosing each request
+     * @param concurrency The number of concurrent connections
+     * @param warmup The time during which results are discarded
+     * @param duration The measured time
+     * @return The measured result
+     */
+    public static LoadResult run(HttpClient client, Scenario scenario, int concurrency, Duration warmup,
+                                 Duration duration) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long measureStart = System.nanoTime() + warmup.toNanos();
+        long measureEnd = measureStart + duration.toNanos();
+        LoadResult result = new LoadResult(duration);
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        for (int worker = 0; worker < concurrency; worker++) {
+            SplittableRandom random = new SplittableRandom(worker);
+            workers.execute(() -> {
+                Map<String, Latencies> latencies = new HashMap<>();
+                try {
+                    while (System.nanoTime() < measureEnd) {
+                        Call call = scenario.next(random);
+                        long start = System.nanoTime();
+                        String status;
+                        try {
+                            status = String.valueOf(client.send(call.request(), HttpResponse.BodyHandlers.discarding()).statusCode());
+                        } catch (Exception e) {
+                            status = e.getClass().getSimpleName();
+                        }
+                        long end = System.nanoTime();
+                        if (start >= measureStart && end <= measureEnd) {
+                            latencies.computeIfAbsent(call.operation(), operation -> new Latencies()).add(end - start);
+                            result.statuses.computeIfAbsent(call.operation() + " " + status, key -> new LongAdder()).increment();
+                        }
+                    }
+                } finally {
+                    latencies.forEach(result::add);
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        workers.shutdownNow();
+        return result;
+    }
+
+    /**
+     * Scenario rotating over fixed GET requests, each URL being its own operation.
+     */
+    private static Scenario urls(List<String> urls, String token) {
+        List<Call> calls = urls.stream().map(url -> {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30)).GET();
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            return new Call("GET " + URI.create(url).getPath(), builder.build());
+        }).toList();
+        return random -> calls.get(random.nextInt(calls.size()));
+    }
+
+    private static Map<String, List<String>> parse(String[] args) {
+        Map<String, List<String>> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            options.computeIfAbsent(name, key -> new ArrayList<>()).add(arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static String first(Map<String, List<String>> options, String name, String defaultValue) {
+        List<String> values = options.get(name);
+        return values == null ? defaultValue : values.get(0);
+    }
+
+    /**
+     * Chooses the next request of a connection. Called concurrently, with a random generator per connection.
+     */
+    @FunctionalInterface
+    public interface Scenario {
+        Call next(SplittableRandom random);
+    }
+
+    /**
+     * A request, and the operation its latency and status are reported under.
+     */
+    public record Call(String operation, HttpRequest request) {
+    }
+
+    /**
+     * Growable array of latencies, in nanoseconds, owned by one connection.
+     */
+    private static final class Latencies {
+        private long[] values = new long[1024];
+        private int count;
+
+        private void add(long latency) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = latency;
+        }
+    }
+
+    /**
+     * Latencies and status codes of the measured requests.
+     */
+    public static final class LoadResult {
+
+        private final Duration duration;
+        private final Map<String, List<long[]>> latencies = new TreeMap<>();
+        private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        private LoadResult(Duration duration) {
+            this.duration = duration;
+        }
+
+        private synchronized void add(String operation, Latencies operationLatencies) {
+            latencies.computeIfAbsent(operation, key -> new ArrayList<>())
+                    .add(Arrays.copyOf(operationLatencies.values, operationLatencies.count));
+        }
+
+        /**
+         * Formats the throughput, latency percentiles and status counts of the run, overall and per operation.
+         *
+         * @param concurrency The number of concurrent connections of the run
+         * @return A human-readable report
+         */
+        public synchronized String report(int concurrency) {
+            long[] all = latencies.values().stream().flatMap(List::stream).flatMapToLong(Arrays::stream).sorted().toArray();
+            StringBuilder report = new StringBuilder()
+                    .append(String.format("concurrency=%d duration=%ds%n", concurrency, duration.toSeconds()))
+                    .append(line("all", all));
+            latencies.forEach((operation, arrays) ->
+                    report.append(line(operation, arrays.stream().flatMapToLong(Arrays::stream).sorted().toArray())));
+            report.append("statuses:");
+            new TreeMap<>(statuses).forEach((status, count) -> report.append("\n  ").append(status).append('=').append(count.sum()));
+            return report.toString();
+        }
+
+        private String line(String operation, long[] sorted) {
+            return String.format("%-28s requests=%d throughput=%.1f req/s latency ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    operation, sorted.length, sorted.length / (duration.toNanos() / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), percentile(sorted, 1.0));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
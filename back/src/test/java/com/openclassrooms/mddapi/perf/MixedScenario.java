@@ -0,0 +1,148 @@
+package com.openclassrooms.mddapi.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.perf.LoadDriver.Call;
+import com.openclassrooms.mddapi.perf.LoadDriver.Scenario;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Mix of user calls replayed against a server started with the {@code perf} profile, whose dataset is generated
+ * by {@code PerfDatasetGenerator}: user {@code i} is {@code perf<i>}, and articles are numbered from 1.
+ *
+ * Each call picks an operation by weight, set with {@code --mix} (default {@value #DEFAULT_MIX}):
+ * <ul>
+ *     <li>{@code feed}: first page of the subscribed feed of a random logged-in user</li>
+ *     <li>{@code detail}: a random article, recent ones more often</li>
+ *     <li>{@code comment}: a comment added by a logged-in user to a random article</li>
+ *     <li>{@code login}: a login of a random user, which hashes its password</li>
+ * </ul>
+ * Before the run, {@code --logged-in-users} users log in once, and their tokens are reused by the authenticated calls.
+ * {@code --users} and {@code --articles} must match the generated dataset.
+ */
+final class MixedScenario implements Scenario {
+
+    static final String DEFAULT_MIX = "feed:50,detail:30,comment:10,login:10";
+
+    private static final Set<String> OPERATIONS = Set.of("feed", "detail", "comment", "login");
+    private static final String PASSWORD = "Password1!";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+    private final int users;
+    private final long articles;
+    private final String[] tokens;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+
+    private MixedScenario(String baseUrl, int users, long articles, String[] tokens, Map<String, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.articles = articles;
+        this.tokens = tokens;
+        this.operations = mix.keySet().toArray(String[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Logs the first users in, then returns the scenario.
+     *
+     * @param client The client used to log in
+     * @param baseUrl The URL of the server, without trailing slash
+     * @param users The number of generated users
+     * @param loggedInUsers The number of users calling the authenticated endpoints
+     * @param articles The number of generated articles
+     * @param mix The weight of each operation
+     * @return The scenario
+     */
+    static MixedScenario create(HttpClient client, String baseUrl, int users, int loggedInUsers, long articles,
+                                Map<String, Integer> mix) throws IOException, InterruptedException {
+        String[] tokens = new String[Math.min(loggedInUsers, users)];
+        for (int i = 0; i < tokens.length; i++) {
+            HttpResponse<String> response = client.send(login(baseUrl, i + 1), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Login of perf" + (i + 1) + " failed with status " + response.statusCode());
+            }
+            tokens[i] = MAPPER.readTree(response.body()).get("token").asText();
+        }
+        return new MixedScenario(baseUrl, users, articles, tokens, mix);
+    }
+
+    /**
+     * Parses a mix such as {@code feed:50,detail:30}.
+     *
+     * @param mix Comma-separated operations and weights
+     * @return The weight of each operation, in the given order
+     */
+    static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || !OPERATIONS.contains(parts[0])) {
+                throw new IllegalArgumentException("Expected feed, detail, comment or login with a weight, got " + entry);
+            }
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    @Override
+    public Call next(SplittableRandom random) {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (draw >= cumulativeWeights[index]) {
+            index++;
+        }
+        int tokenIndex = random.nextInt(tokens.length);
+        return switch (operations[index]) {
+            case "feed" -> new Call("feed", authenticated(tokenIndex,
+                    "/api/articles/subscribed/" + (tokenIndex + 1) + "/feed?size=20").GET().build());
+            case "detail" -> new Call("detail", authenticated(tokenIndex, "/api/articles/" + article(random)).GET().build());
+            case "comment" -> new Call("comment", authenticated(tokenIndex, "/api/comments")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                            "{\"content\":\"Load test comment\",\"articleId\":%d,\"userId\":%d}",
+                            article(random), tokenIndex + 1)))
+                    .build());
+            default -> new Call("login", login(baseUrl, 1 + random.nextInt(users)));
+        };
+    }
+
+    /**
+     * Draws an article, recent ones more often, as comments of the generated dataset are.
+     */
+    private long article(SplittableRandom random) {
+        double u = random.nextDouble();
+        return Math.min(articles, 1 + (long) (articles * (1 - u * u)));
+    }
+
+    private HttpRequest.Builder authenticated(int tokenIndex, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .header("Authorization", "Bearer " + tokens[tokenIndex]);
+    }
+
+    private static HttpRequest login(String baseUrl, int user) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                        "{\"emailOrUsername\":\"perf%d\",\"password\":\"%s\"}", user, PASSWORD)))
+                .build();
+    }
+}
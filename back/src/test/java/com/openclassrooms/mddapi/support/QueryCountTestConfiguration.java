@@ -0,0 +1,47 @@
+package com.openclassrooms.mddapi.support;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application data source in a datasource-proxy reporting every statement to a {@link QueryCounter}.
+ * Import it in a Spring Boot test and inject the counter to assert query budgets.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class QueryCountTestConfiguration {
+
+    /**
+     * @return The counter recording the statements of the application data source
+     */
+    @Bean
+    public QueryCounter queryCounter() {
+        return new QueryCounter();
+    }
+
+    /**
+     * Proxies the {@code dataSource} bean, used by JPA and JDBC.
+     *
+     * @param queryCounter The counter the statements are reported to, looked up once the data source is created
+     * @return The post-processor wrapping the data source
+     */
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor(ObjectProvider<QueryCounter> queryCounter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(queryCounter.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.mddapi.support;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the SQL statements executed through the data source while an action runs, so that tests can assert
+ * the number of statements of an endpoint or a service method, and fail on a new N+1 query.
+ *
+ * Statements of every thread are recorded, including those the comment writer runs for the request;
+ * a JDBC batch counts as one statement. Registered on the data source by {@link QueryCountTestConfiguration}.
+ */
+public class QueryCounter implements QueryExecutionListener {
+
+    // Statements of the running recording, null outside of record()
+    private volatile List<String> statements;
+
+    /**
+     * Runs the action and returns the statements it executed.
+     *
+     * @param action The action to measure
+     * @return The SQL of each executed statement, in execution order
+     */
+    public synchronized List<String> record(Action action) throws Exception {
+        List<String> recorded = Collections.synchronizedList(new ArrayList<>());
+        statements = recorded;
+        try {
+            action.run();
+            return List.copyOf(recorded);
+        } finally {
+            statements = null;
+        }
+    }
+
+    /**
+     * Runs the action and fails unless it executed exactly the expected number of statements.
+     *
+     * @param expected The query budget of the action
+     * @param action The action to measure
+     * @throws AssertionError listing the executed statements if the budget is not met
+     */
+    public void assertStatements(int expected, Action action) throws Exception {
+        List<String> executed = record(action);
+        if (executed.size() != expected) {
+            throw new AssertionError("Expected " + expected + " statements, got " + executed.size() + ":\n  "
+                    + String.join("\n  ", executed));
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        List<String> recorded = statements;
+        if (recorded != null) {
+            recorded.add(queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery());
+        }
+    }
+
+    /**
+     * Action whose statements are recorded, such as a MockMvc call.
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.mddapi.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Inserts test rows directly with SQL, bypassing the services and their caches.
+ *
+ * The base dataset is a user, a theme and an article of the user in the theme. Test classes sharing an application
+ * context share its database: each inserts the base dataset, which only the first one actually creates, and adds
+ * its own rows with IDs that do not collide with those of the other classes.
+ */
+public final class TestDataset {
+
+    public static final long USER = 1;
+    public static final long THEME = 1;
+    public static final long ARTICLE = 1;
+
+    private TestDataset() {
+    }
+
+    /**
+     * Inserts the base dataset, unless it already exists.
+     *
+     * @param database The database to insert into
+     * @param articleTitle The title of the article
+     */
+    public static void insertBase(JdbcTemplate database, String articleTitle) {
+        Long users = database.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Long.class, USER);
+        if (users != null && users > 0) {
+            return;
+        }
+        insertUser(database, USER, "author", "password");
+        insertTheme(database, THEME, "Theme");
+        insertArticle(database, ARTICLE, articleTitle, THEME, USER, LocalDateTime.now());
+    }
+
+    /**
+     * @param password The stored password, already encoded if the user logs in
+     */
+    public static void insertUser(JdbcTemplate database, long id, String username, String password) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        database.update("INSERT INTO users (id, username, email, password, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                id, username, username + "@example.com", password, now, now);
+    }
+
+    public static void insertTheme(JdbcTemplate database, long id, String title) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        database.update("INSERT INTO themes (id, title, description, created_at, updated_at) VALUES (?, ?, 'Description', ?, ?)",
+                id, title, now, now);
+    }
+
+    public static void insertSubscription(JdbcTemplate database, long id, long userId, long themeId) {
+        database.update("INSERT INTO subscriptions (id, user_id, theme_id, created_at) VALUES (?, ?, ?, ?)",
+                id, userId, themeId, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    public static void insertArticle(JdbcTemplate database, long id, String title, long themeId, long authorId,
+                                     LocalDateTime createdAt) {
+        database.update("INSERT INTO articles (id, title, theme_id, author_id, content, created_at, updated_at) VALUES (?, ?, ?, ?, 'Content', ?, ?)",
+                id, title, themeId, authorId, Timestamp.valueOf(createdAt), Timestamp.valueOf(createdAt));
+    }
+
+    public static void insertComment(JdbcTemplate database, long id, long articleId, long senderId,
+                                     LocalDateTime createdAt) {
+        database.update("INSERT INTO comments (id, content, sender_id, article_id, created_at, updated_at) VALUES (?, 'Comment', ?, ?, ?, ?)",
+                id, senderId, articleId, Timestamp.valueOf(createdAt), Timestamp.valueOf(createdAt));
+    }
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.mddapi.service;
+
+import com.openclassrooms.mddapi.dto.ArticleDTO;
+import com.openclassrooms.mddapi.dto.ArticleSummaryDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping a feed once its rows are loaded: grouping comments onto article details,
+ * and setting comment counts on summaries (lists and feed).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleMappingBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int articles;
+
+    @Param({"0", "5", "50"})
+    public int commentsPerArticle;
+
+    private FeedFixtures feed;
+
+    @Setup
+    public void setUp() {
+        feed = new FeedFixtures(articles, commentsPerArticle);
+    }
+
+    @Benchmark
+    public List<ArticleDTO> attachComments() {
+        return ArticleService.attachComments(feed.details, feed.comments);
+    }
+
+    @Benchmark
+    public List<ArticleSummaryDTO> attachCommentCounts() {
+        return ArticleService.attachCommentCounts(feed.summaries, feed.commentCounts);
+    }
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.mddapi.service;
+
+import com.openclassrooms.mddapi.dto.ArticleDTO;
+import com.openclassrooms.mddapi.dto.ArticleSummaryDTO;
+import com.openclassrooms.mddapi.dto.CommentDTO;
+import com.openclassrooms.mddapi.model.Theme;
+import com.openclassrooms.mddapi.model.User;
+import com.openclassrooms.mddapi.repository.CommentRepository.ArticleCommentCount;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic, realistic feed data: articles of about 2 KB spread over 20 themes and 200 authors,
+ * each with between 0 and twice {@code commentsPerArticle} comments of about 200 characters.
+ */
+final class FeedFixtures {
+
+    private static final int THEMES = 20;
+    private static final int AUTHORS = 200;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    final List<ArticleSummaryDTO> summaries = new ArrayList<>();
+    final List<ArticleDTO> details = new ArrayList<>();
+    final List<CommentDTO> comments = new ArrayList<>();
+    final List<ArticleCommentCount> commentCounts = new ArrayList<>();
+
+    /**
+     * @param articleCount Number of articles of the feed
+     * @param commentsPerArticle Average number of comments per article
+     */
+    FeedFixtures(int articleCount, int commentsPerArticle) {
+        Random random = new Random(42);
+        List<Theme> themes = new ArrayList<>();
+        for (long id = 1; id <= THEMES; id++) {
+            themes.add(new Theme(id, "Theme " + id, text(random, 120), START, START));
+        }
+        List<User> authors = new ArrayList<>();
+        for (long id = 1; id <= AUTHORS; id++) {
+            authors.add(new User(id, "user" + id, "user" + id + "@example.com", "$2a$10$" + text(random, 53),
+                    LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1)));
+        }
+
+        long commentId = 1;
+        for (long id = 1; id <= articleCount; id++) {
+            Theme theme = themes.get(random.nextInt(THEMES));
+            User author = authors.get(random.nextInt(AUTHORS));
+            LocalDateTime createdAt = START.plusMinutes(id * 7);
+            String title = text(random, 60);
+            String content = text(random, 2000);
+
+            summaries.add(new ArticleSummaryDTO(id, title, content.substring(0, ArticleSummaryDTO.EXCERPT_LENGTH),
+                    createdAt, author.getUsername(), theme.getId(), theme.getTitle()));
+            details.add(new ArticleDTO(id, title, content, createdAt, createdAt, author.getUsername(),
+                    theme.getId(), theme.getTitle()));
+
+            int count = commentsPerArticle == 0 ? 0 : random.nextInt(2 * commentsPerArticle + 1);
+            for (int i = 0; i < count; i++) {
+                User sender = authors.get(random.nextInt(AUTHORS));
+                comments.add(new CommentDTO(commentId++, text(random, 200), id, sender.getId(), sender.getUsername(),
+                        createdAt.plusMinutes(i + 1)));
+            }
+            if (count > 0) {
+                commentCounts.add(commentCount(id, count));
+            }
+        }
+    }
+
+    private static ArticleCommentCount commentCount(long articleId, long count) {
+        return new ArticleCommentCount() {
+            @Override
+            public Long getArticleId() {
+                return articleId;
+            }
+
+            @Override
+            public Long getCommentCount() {
+                return count;
+            }
+        };
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            int word = 2 + random.nextInt(9);
+            for (int i = 0; i < word && text.length() < length; i++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            if (text.length() < length) {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+}
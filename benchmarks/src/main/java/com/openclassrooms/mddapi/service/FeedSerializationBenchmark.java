@@ -0,0 +1,61 @@
+package com.openclassrooms.mddapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.dto.CursorPageDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serializing feeds to JSON with an object mapper configured like Spring Boot's:
+ * article summaries as returned by the article list and the feed, and article details with their comments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeedSerializationBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int articles;
+
+    @Param({"0", "5", "50"})
+    public int commentsPerArticle;
+
+    private ObjectMapper objectMapper;
+    private CursorPageDTO<?> summaryPage;
+    private FeedFixtures feed;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        feed = new FeedFixtures(articles, commentsPerArticle);
+        ArticleService.attachCommentCounts(feed.summaries, feed.commentCounts);
+        ArticleService.attachComments(feed.details, feed.comments);
+        summaryPage = new CursorPageDTO<>(feed.summaries, "MjAyNC0wMS0wMVQwMDowMHwx");
+    }
+
+    @Benchmark
+    public byte[] serializeSummaryPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaryPage);
+    }
+
+    @Benchmark
+    public byte[] serializeArticlesWithComments() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(feed.details);
+    }
+}
@@ -1,7 +1,8 @@
 export interface Article {
     id: number;
     title: string;
-    content: string;
+    content?: string;
+    excerpt?: string;
     createdAt: string;
     updatedAt?: string;
     authorId?: number;
@@ -9,6 +10,8 @@ export interface Article {
     themeId?: number;
     themeTitle?: string;
     comments?: Comment[];
+    nextCommentsCursor?: string | null;
+    commentCount?: number;
     date?: string;
     author?: string;
 }
@@ -22,6 +25,11 @@ export interface Comment {
     articleId?: number;
 }
 
+export interface CommentPage {
+    items: Comment[];
+    nextCursor: string | null;
+}
+
 export interface ArticleFormData {
     themeId: number | undefined;
     title: string;
@@ -37,6 +45,7 @@ export interface ArticleDisplay {
 }
 
 export interface CommentDisplay {
+    id?: number;
     username: string;
     content: string;
 }
@@ -1,16 +1,17 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { ActivatedRoute } from '@angular/router';
 import { Location } from '@angular/common';
 import { ArticleService } from 'src/app/services/article.service';
 import { AuthService } from 'src/app/services/auth.service';
-import { Article, ArticleDisplay, Comment, CommentDisplay } from 'src/app/models/article.model';
+import { Article, ArticleDisplay, Comment, CommentDisplay, CommentPage } from 'src/app/models/article.model';
+import { Subscription } from 'rxjs';
 
 @Component({
   selector: 'app-article',
   templateUrl: './article.component.html',
   styleUrls: ['./article.component.scss']
 })
-export class ArticleComponent implements OnInit {
+export class ArticleComponent implements OnInit, OnDestroy {
   articleId: number | null = null;
   article: ArticleDisplay = {
     title: '',
@@ -20,8 +21,10 @@ export class ArticleComponent implements OnInit {
     content: ''
   }; 
   comments: CommentDisplay[] = []; 
+  nextCommentsCursor: string | null = null;
   newComment: string = "";
   currentUserId: number = 0;
+  private liveComments?: Subscription;
 
   constructor(
     private route: ActivatedRoute, 
@@ -36,6 +39,10 @@ export class ArticleComponent implements OnInit {
     this.loadArticleData();
   }
 
+  ngOnDestroy(): void {
+    this.liveComments?.unsubscribe();
+  }
+
   getCurrentUserId(): void {
     this.currentUserId = this.authService.getCurrentUserId();
   }
@@ -50,14 +57,17 @@ export class ArticleComponent implements OnInit {
           date: response.createdAt,
           author: response.authorUsername || '',
           theme: response.themeTitle ? response.themeTitle : "Aucun thème", 
-          content: response.content,
+          content: response.content || "",
         };
 
         // Update comments
         this.comments = response.comments?.map((comment: Comment) => ({
+          id: comment.id,
           username: comment.senderUsername || '',
           content: comment.content
         })) || [];
+        this.nextCommentsCursor = response.nextCommentsCursor || null;
+        this.watchComments();
       },
       error: (error: Error) => {
         console.error("Erreur lors de la récupération de l'article", error);
@@ -65,6 +75,45 @@ export class ArticleComponent implements OnInit {
     });
   }
 
+  loadMoreComments(): void {
+    if (!this.articleId || !this.nextCommentsCursor) return;
+
+    this.articleService.getComments(this.articleId, this.nextCommentsCursor).subscribe({
+      next: (page: CommentPage) => {
+        this.appendComments(page.items);
+        this.nextCommentsCursor = page.nextCursor;
+      },
+      error: (error: Error) => {
+        console.error("Erreur lors de la récupération des commentaires", error);
+      }
+    });
+  }
+
+  watchComments(): void {
+    if (!this.articleId) return;
+
+    // Catch up from the last loaded comment when every page is loaded, later comments then arrive live
+    const last = this.nextCommentsCursor ? undefined : this.comments[this.comments.length - 1]?.id;
+    this.liveComments?.unsubscribe();
+    this.liveComments = this.articleService.watchComments(this.articleId, last).subscribe((page: CommentPage) => {
+      // Live comments are shown once the older pages are loaded, until then "load more" brings them
+      if (!this.nextCommentsCursor) {
+        this.appendComments(page.items);
+        this.nextCommentsCursor = page.nextCursor;
+      }
+    });
+  }
+
+  appendComments(comments: Comment[]): void {
+    // A comment may arrive both live and from a page, keep the first one
+    const known = new Set(this.comments.map(comment => comment.id));
+    this.comments.push(...comments.filter(comment => !known.has(comment.id)).map((comment: Comment) => ({
+      id: comment.id,
+      username: comment.senderUsername || '',
+      content: comment.content
+    })));
+  }
+
   goBack() {
     this.location.back();
   }
@@ -75,10 +124,13 @@ export class ArticleComponent implements OnInit {
     this.articleService.addComment(this.articleId, this.currentUserId, this.newComment).subscribe({
       next: (response: Comment) => {
   
-        this.comments.push({
-          username: response.senderUsername || "Moi",
-          content: this.newComment
-        });
+        if (!this.comments.some(comment => comment.id === response.id)) {
+          this.comments.push({
+            id: response.id,
+            username: response.senderUsername || "Moi",
+            content: this.newComment
+          });
+        }
   
         this.newComment = "";
       },
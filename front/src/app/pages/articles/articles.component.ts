@@ -1,18 +1,20 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { Router } from '@angular/router';
 import { ArticleService } from 'src/app/services/article.service';
 import { AuthService } from 'src/app/services/auth.service';
 import { Article } from 'src/app/models/article.model';
+import { Subscription } from 'rxjs';
 
 @Component({
   selector: 'app-articles',
   templateUrl: './articles.component.html',
   styleUrls: ['./articles.component.scss'],
 })
-export class ArticlesComponent implements OnInit {
+export class ArticlesComponent implements OnInit, OnDestroy {
   
   articles: Article[] = [];
   isDescending: boolean = true;
+  private stream?: Subscription;
 
   constructor(
     private router: Router, 
@@ -22,6 +24,11 @@ export class ArticlesComponent implements OnInit {
 
   ngOnInit() {
     this.loadArticles();
+    this.listenToNewArticles();
+  }
+
+  ngOnDestroy() {
+    this.stream?.unsubscribe();
   }
 
   loadArticles() {
@@ -37,6 +44,15 @@ export class ArticlesComponent implements OnInit {
     });
   }
 
+  listenToNewArticles() {
+    // Articles created in the subscribed themes are pushed by the server, instead of reloading the list
+    this.stream = this.articleService.streamSubscribedArticles().subscribe((article: Article) => {
+      if (!this.articles.some(existing => existing.id === article.id)) {
+        this.articles = [article, ...this.articles];
+      }
+    });
+  }
+
   sortByDate() {
     this.articles.sort((a, b) => {
       return this.isDescending
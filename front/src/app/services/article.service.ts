@@ -2,7 +2,12 @@ import { Injectable, OnDestroy } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
 import { Observable, Subject } from 'rxjs';
 import { takeUntil } from 'rxjs/operators';
-import { Article, Comment, ArticleFormData } from '../models/article.model';
+import { Article, Comment, CommentPage, ArticleFormData } from '../models/article.model';
+
+// Close code of a live comment session whose last known comment does not exist
+const WS_CLOSE_BAD_DATA = 1007;
+const RECONNECT_DELAY_MS = 1000;
+const MAX_RECONNECT_DELAY_MS = 30000;
 
 @Injectable({
   providedIn: 'root',
@@ -18,6 +23,16 @@ export class ArticleService implements OnDestroy {
     return this.http.get<Article[]>(`${this.apiUrl}/subscribed/${userId}`).pipe(takeUntil(this.destroy$));
   }
 
+  streamSubscribedArticles(): Observable<Article> {
+    // EventSource cannot send headers, the token goes in the query string of the stream only
+    return new Observable<Article>(subscriber => {
+      const token = encodeURIComponent(localStorage.getItem('token') ?? '');
+      const source = new EventSource(`${this.apiUrl}/subscribed/stream?access_token=${token}`);
+      source.addEventListener('article', event => subscriber.next(JSON.parse((event as MessageEvent).data)));
+      return () => source.close();
+    }).pipe(takeUntil(this.destroy$));
+  }
+
   createArticle(articleData: ArticleFormData): Observable<Article> {
     return this.http.post<Article>(this.apiUrl, articleData).pipe(takeUntil(this.destroy$));
   }
@@ -26,6 +41,54 @@ export class ArticleService implements OnDestroy {
     return this.http.get<Article>(`${this.apiUrl}/${articleId}`).pipe(takeUntil(this.destroy$));
   }
 
+  getComments(articleId: number, cursor: string): Observable<CommentPage> {
+    return this.http.get<CommentPage>(`${this.commentsUrl}/article/${articleId}`, {
+      params: { cursor: cursor }
+    }).pipe(takeUntil(this.destroy$));
+  }
+
+  watchComments(articleId: number, afterCommentId?: number): Observable<CommentPage> {
+    // WebSocket handshakes cannot send headers, the token goes in the query string of the live endpoint only
+    return new Observable<CommentPage>(subscriber => {
+      let lastCommentId = afterCommentId;
+      let socket: WebSocket | undefined;
+      let reconnect: ReturnType<typeof setTimeout> | undefined;
+      let attempts = 0;
+      let stopped = false;
+
+      const connect = () => {
+        const token = encodeURIComponent(localStorage.getItem('token') ?? '');
+        const after = lastCommentId ? `&after=${lastCommentId}` : '';
+        socket = new WebSocket(`${this.commentsUrl.replace(/^http/, 'ws')}/article/${articleId}/live?access_token=${token}${after}`);
+        socket.onopen = () => attempts = 0;
+        socket.onmessage = event => {
+          const page: CommentPage = JSON.parse(event.data);
+          page.items.forEach(comment => lastCommentId = Math.max(lastCommentId ?? 0, comment.id));
+          subscriber.next(page);
+        };
+        socket.onclose = event => {
+          if (stopped) return;
+          if (event.code === WS_CLOSE_BAD_DATA) {
+            // The last comment is unknown, there is nothing to catch up from
+            subscriber.complete();
+            return;
+          }
+          // The server closed the session, or the connection dropped: reconnect after a growing delay,
+          // catching up from the last comment received
+          const delay = Math.min(RECONNECT_DELAY_MS * 2 ** attempts++, MAX_RECONNECT_DELAY_MS);
+          reconnect = setTimeout(connect, delay);
+        };
+      };
+
+      connect();
+      return () => {
+        stopped = true;
+        clearTimeout(reconnect);
+        socket?.close();
+      };
+    }).pipe(takeUntil(this.destroy$));
+  }
+
   addComment(articleId: number, userId: number, content: string): Observable<Comment> {
     return this.http.post<Comment>(this.commentsUrl, {
       articleId: articleId,